@@ -0,0 +1,254 @@
+package board;
+
+/**
+ * This class holds the 64-bit bitboard helpers used by the board.
+ * Squares are numbered row * 8 + column, so A8 is square 0 and H1 is square 63,
+ * matching the row and column layout used by Position.
+ *
+ * Everything is precomputed per square: the attacks of the leaping pieces, the ray in
+ * each of the eight directions, and for every pair of squares the squares strictly
+ * between them and the full line through them. Sliding attacks, path clearance and
+ * pin tests are then a few table lookups instead of square-by-square walks.
+ */
+public final class Bitboards {
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final long[][] RAYS = new long[8][64]; // Indexed by direction, then square; excludes the square itself
+    private static final long[][] BETWEEN = new long[64][64]; // Squares strictly between two aligned squares
+    private static final long[][] LINE = new long[64][64]; // Whole board line through two aligned squares
+    private static final long[] FILES = new long[8]; // Every square of each column
+    private static final long[] ADJACENT_FILES = new long[8]; // The columns on either side of each column
+    private static final long[][] PASSED_PAWN_MASKS = new long[2][64]; // Squares ahead of a pawn on its own and adjacent columns
+
+    private static final int[][] KNIGHT_OFFSETS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_OFFSETS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    // Rook directions first, then bishop directions; each direction is followed by its opposite
+    private static final int[][] DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {1, 1}, {-1, 1}, {1, -1}};
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int row = sq >>> 3;
+            int col = sq & 7;
+            KNIGHT_ATTACKS[sq] = offsets(row, col, KNIGHT_OFFSETS);
+            KING_ATTACKS[sq] = offsets(row, col, KING_OFFSETS);
+            // White pawns move towards row 0, black pawns towards row 7
+            PAWN_ATTACKS[0][sq] = offsets(row, col, new int[][]{{-1, -1}, {-1, 1}});
+            PAWN_ATTACKS[1][sq] = offsets(row, col, new int[][]{{1, -1}, {1, 1}});
+            for (int d = 0; d < 8; d++) {
+                int r = row + DIRECTIONS[d][0];
+                int c = col + DIRECTIONS[d][1];
+                while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    RAYS[d][sq] |= bit(square(r, c));
+                    r += DIRECTIONS[d][0];
+                    c += DIRECTIONS[d][1];
+                }
+            }
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int d = 0; d < 8; d++) {
+                long ray = RAYS[d][a];
+                while (ray != 0L) {
+                    int b = Long.numberOfTrailingZeros(ray);
+                    ray &= ray - 1;
+                    BETWEEN[a][b] = RAYS[d][a] & RAYS[d ^ 1][b];
+                    LINE[a][b] = RAYS[d][a] | RAYS[d ^ 1][a] | bit(a);
+                }
+            }
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            FILES[sq & 7] |= bit(sq);
+        }
+        for (int col = 0; col < 8; col++) {
+            ADJACENT_FILES[col] = (col > 0 ? FILES[col - 1] : 0L) | (col < 7 ? FILES[col + 1] : 0L);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            long span = FILES[sq & 7] | ADJACENT_FILES[sq & 7];
+            // White pawns advance towards row 0, so the squares ahead of them have lower indexes
+            PASSED_PAWN_MASKS[0][sq] = span & ((1L << (sq & ~7)) - 1);
+            PASSED_PAWN_MASKS[1][sq] = span & (-1L << (sq | 7)) << 1;
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * Converts a row and column into a square index.
+     *
+     * @param row    The row of the square.
+     * @param column The column of the square.
+     * @return The square index.
+     */
+    public static int square(int row, int column) {
+        return (row << 3) | column;
+    }
+
+    /**
+     * Gets the bitboard with only the given square set.
+     *
+     * @param square The square index.
+     * @return The single-bit bitboard.
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Gets the squares attacked by a knight.
+     *
+     * @param square The square of the knight.
+     * @return The attacked squares.
+     */
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares attacked by a king.
+     *
+     * @param square The square of the king.
+     * @return The attacked squares.
+     */
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares attacked by a pawn.
+     *
+     * @param isWhite The color of the pawn.
+     * @param square  The square of the pawn.
+     * @return The attacked squares.
+     */
+    public static long pawnAttacks(boolean isWhite, int square) {
+        return PAWN_ATTACKS[isWhite ? 0 : 1][square];
+    }
+
+    /**
+     * Gets the squares attacked by a bishop, stopping at the first blocker in each direction.
+     *
+     * @param square   The square of the bishop.
+     * @param occupied The occupied squares.
+     * @return The attacked squares.
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return ray(4, square, occupied) | ray(5, square, occupied) | ray(6, square, occupied) | ray(7, square, occupied);
+    }
+
+    /**
+     * Gets the squares attacked by a rook, stopping at the first blocker in each direction.
+     *
+     * @param square   The square of the rook.
+     * @param occupied The occupied squares.
+     * @return The attacked squares.
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return ray(0, square, occupied) | ray(1, square, occupied) | ray(2, square, occupied) | ray(3, square, occupied);
+    }
+
+    /**
+     * Gets the squares attacked by a queen, stopping at the first blocker in each direction.
+     *
+     * @param square   The square of the queen.
+     * @param occupied The occupied squares.
+     * @return The attacked squares.
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return bishopAttacks(square, occupied) | rookAttacks(square, occupied);
+    }
+
+    /**
+     * Gets the squares strictly between two squares on the same row, column or diagonal.
+     *
+     * @param from The first square.
+     * @param to   The second square.
+     * @return The squares between them, or 0 if they are not aligned or are adjacent.
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Gets the whole row, column or diagonal running through two squares, edge to edge.
+     *
+     * @param from The first square.
+     * @param to   The second square.
+     * @return The squares of the line, or 0 if the squares are not aligned.
+     */
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    /**
+     * Gets every square of a column.
+     *
+     * @param column The column, 0 for A to 7 for H.
+     * @return The squares of the column.
+     */
+    public static long file(int column) {
+        return FILES[column];
+    }
+
+    /**
+     * Gets the columns on either side of a column.
+     *
+     * @param column The column, 0 for A to 7 for H.
+     * @return The squares of the neighbouring columns.
+     */
+    public static long adjacentFiles(int column) {
+        return ADJACENT_FILES[column];
+    }
+
+    /**
+     * Gets the squares an enemy pawn must be absent from for a pawn to be passed: every square
+     * ahead of it on its own column and the two columns beside it.
+     *
+     * @param isWhite The color of the pawn.
+     * @param square  The square of the pawn.
+     * @return The squares ahead of the pawn.
+     */
+    public static long passedPawnMask(boolean isWhite, int square) {
+        return PASSED_PAWN_MASKS[isWhite ? 0 : 1][square];
+    }
+
+    /**
+     * Checks if a sliding piece could move between two squares on an otherwise empty board.
+     *
+     * @param from     The first square.
+     * @param to       The second square.
+     * @param diagonal true for diagonal lines (bishop), false for rows and columns (rook).
+     * @return true if the squares are aligned in that way, false otherwise.
+     */
+    public static boolean aligned(int from, int to, boolean diagonal) {
+        if (LINE[from][to] == 0L) {
+            return false;
+        }
+        boolean straight = (from >>> 3) == (to >>> 3) || (from & 7) == (to & 7);
+        return straight != diagonal;
+    }
+
+    // Squares reached along one direction, up to and including the first occupied square
+    private static long ray(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+        if (blockers != 0L) {
+            // Directions 1, 3, 5 and 7 increase the square index, so their nearest blocker is the lowest bit
+            int blocker = (direction & 1) != 0 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+            ray ^= RAYS[direction][blocker];
+        }
+        return ray;
+    }
+
+    private static long offsets(int row, int col, int[][] offsets) {
+        long attacks = 0L;
+        for (int[] offset : offsets) {
+            int r = row + offset[0];
+            int c = col + offset[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                attacks |= bit(square(r, c));
+            }
+        }
+        return attacks;
+    }
+}
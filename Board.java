@@ -2,17 +2,93 @@ package board;
 
 import pieces.Piece;
 import pieces.Position;
-import pieces.Piece.King;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * This class represents the chessboard for the game.
+ * The pieces are kept both as objects in an 8x8 array, which the GUI and the pieces'
+ * own move validation read, and as bitboards (one per piece type and color, plus
+ * occupancy) which are used for attack detection.
  */
 public class Board {
+    private static final int WHITE = 0;
+    private static final int BLACK = 1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int NO_SQUARE = -1;
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final int ENCODED_SIZE = 29; // Bytes written by encode: occupancy (8), pieces (16), state (2), clocks (3)
+
+    private static final String FEN_PIECES = "PNBRQKpnbrqk"; // FEN letter of each piece index
+    // King square, rook square and castling right of each castling move
+    private static final int[][] CASTLING_HOMES = {{60, 63, 1}, {60, 56, 2}, {4, 7, 4}, {4, 0, 8}};
+
+    // Castling rights that survive a move from or to each square
+    private static final int[] CASTLING_MASK = new int[64];
+    // Piece values used by see, indexed by type: the evaluation's material, with a king worth more than any exchange
+    private static final int[] EXCHANGE_VALUES = PieceSquareTables.MIDDLEGAME_VALUES.clone();
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            CASTLING_MASK[sq] = 15;
+        }
+        CASTLING_MASK[0] = 15 & ~BLACK_QUEENSIDE;
+        CASTLING_MASK[4] = 15 & ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[7] = 15 & ~BLACK_KINGSIDE;
+        CASTLING_MASK[56] = 15 & ~WHITE_QUEENSIDE;
+        CASTLING_MASK[60] = 15 & ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[63] = 15 & ~WHITE_KINGSIDE;
+        EXCHANGE_VALUES[Piece.KING] = 20000;
+    }
+
     private Piece[][] board;
     private List<Piece> capturedPieces;
+    private long[] pieceBitboards; // Indexed by color * 6 + piece type
+    private long[] colorBitboards; // Indexed by color
+    private long occupied; // All occupied squares
+    private int[] mailbox; // Piece index (color * 6 + type) on each square, or -1
+    private int[] kingSquares; // Square of each color's king, or NO_SQUARE
+    private int[][] pieceSquares; // Compact list of the occupied squares of each color
+    private int[] pieceCounts; // Length of each color's list
+    private int[] listIndex; // Position of each occupied square in its color's list
+    private MoveList scratchMoves; // Reused by the Move-object adapters and terminal-state checks
+    private Piece[][] piecePool; // Pieces taken off by a position load or a takeback of a promotion, by piece index, to reuse
+    private int[] poolSizes;
+    private int[] exchangeGains; // Reused by see, one entry per capture in the sequence
+    private int castlingRights; // Bit set of the castling moves still allowed
+    private int enPassantSquare; // Square behind a pawn that just moved two squares, or NO_SQUARE
+    private int halfmoveClock; // Moves since the last capture or pawn move
+    private int plyOffset; // Plies played before the first position on the undo stack, for the fullmove number
+    private boolean whiteToMove; // The color whose turn it is
+    private long hash; // Zobrist key of the position, updated on every change
+    private long pawnHash; // Zobrist key of the pawns alone, updated whenever a pawn is added or removed
+    private int middlegameScore; // Material and piece-square score for white in the middlegame, updated on every change
+    private int endgameScore; // The same in the endgame
+    private int phase; // Sum of the phase weights of the pieces on the board
+
+    // Undo stack: one packed record per made move, plus the piece objects a record cannot hold
+    private long[] undoRecords;
+    private int[] undoMoves; // The encoded move of each record, for the game's move history
+    private long[] undoHashes; // The position key before each move, which doubles as the history for repetitions
+    private Piece[] undoCaptured; // The captured piece of each move, or null
+    private Piece[] undoPawns; // The pawn replaced by each promotion, or null
+    private int undoCount;
+
+    // Attack information of each position on the undo stack, filled in the first time it is asked for
+    private long[] checkers; // Pieces giving check to the side to move, or UNKNOWN
+    private long[][] attacks; // Squares attacked by each color, or UNKNOWN
+    private static final long UNKNOWN = -1L; // No position has every square attacked or giving check
+
+    // Kinds of moves to generate
+    private static final int TACTICAL = 1; // Captures, including en passant, and promotions
+    private static final int QUIET = 2; // Every other move, including castling
 
     /**
      * Initializes a new Board with pieces in their starting positions.
@@ -20,13 +96,98 @@ public class Board {
     public Board() {
         this.board = new Piece[8][8];
         this.capturedPieces = new ArrayList<>();
+        this.pieceBitboards = new long[12];
+        this.colorBitboards = new long[2];
+        this.mailbox = new int[64];
+        this.kingSquares = new int[2];
+        this.pieceSquares = new int[2][16];
+        this.pieceCounts = new int[2];
+        this.listIndex = new int[64];
+        this.scratchMoves = new MoveList();
+        this.exchangeGains = new int[32];
+        this.piecePool = new Piece[12][16];
+        this.poolSizes = new int[12];
+        this.undoRecords = new long[256];
+        this.undoMoves = new int[256];
+        this.undoHashes = new long[256];
+        this.undoCaptured = new Piece[256];
+        this.undoPawns = new Piece[256];
+        this.checkers = new long[257];
+        this.attacks = new long[2][257];
         initialize();
     }
 
+    /**
+     * Initializes a new Board as an independent copy of another one, including its move
+     * history, so that each search thread can work on a board of its own.
+     * @param other The board to copy.
+     */
+    public Board(Board other) {
+        this.board = new Piece[8][8];
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                board[row][col] = copyOf(other.board[row][col]);
+            }
+        }
+        this.capturedPieces = new ArrayList<>();
+        for (Piece piece : other.capturedPieces) {
+            capturedPieces.add(copyOf(piece));
+        }
+        this.pieceBitboards = other.pieceBitboards.clone();
+        this.colorBitboards = other.colorBitboards.clone();
+        this.occupied = other.occupied;
+        this.mailbox = other.mailbox.clone();
+        this.kingSquares = other.kingSquares.clone();
+        this.pieceSquares = new int[][]{other.pieceSquares[WHITE].clone(), other.pieceSquares[BLACK].clone()};
+        this.pieceCounts = other.pieceCounts.clone();
+        this.listIndex = other.listIndex.clone();
+        this.scratchMoves = new MoveList();
+        this.exchangeGains = new int[32];
+        this.piecePool = new Piece[12][16];
+        this.poolSizes = new int[12];
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.plyOffset = other.plyOffset;
+        this.whiteToMove = other.whiteToMove;
+        this.hash = other.hash;
+        this.pawnHash = other.pawnHash;
+        this.middlegameScore = other.middlegameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+        this.undoRecords = other.undoRecords.clone();
+        this.undoMoves = other.undoMoves.clone();
+        this.undoHashes = other.undoHashes.clone();
+        this.undoCaptured = new Piece[other.undoCaptured.length];
+        this.undoPawns = new Piece[other.undoPawns.length];
+        for (int i = 0; i < other.undoCount; i++) {
+            undoCaptured[i] = copyOf(other.undoCaptured[i]);
+            undoPawns[i] = copyOf(other.undoPawns[i]);
+        }
+        this.undoCount = other.undoCount;
+        this.checkers = other.checkers.clone();
+        this.attacks = new long[][]{other.attacks[WHITE].clone(), other.attacks[BLACK].clone()};
+    }
+
+    /**
+     * Creates a new piece with the same type, color and position as another one.
+     * @param piece The piece to copy, or null.
+     * @return The copy, or null.
+     */
+    private static Piece copyOf(Piece piece) {
+        return piece == null ? null : Piece.create(piece.getType(), piece.isWhite(), piece.getPosition());
+    }
+
     /**
      * Initializes the chessboard with pieces in their starting positions.
      */
     public void initialize() {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                board[row][col] = null;
+            }
+        }
+
         // Set up black pieces
         board[0][0] = new Piece.Rook(false, new Position(0, 0));
         board[0][1] = new Piece.Knight(false, new Position(0, 1));
@@ -52,30 +213,1201 @@ public class Board {
         for (int col = 0; col < 8; col++) {
             board[6][col] = new Piece.Pawn(true, new Position(6, col));
         }
+        rebuildBitboards();
+        castlingRights = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        whiteToMove = true;
+        plyOffset = 0;
+        undoCount = 0;
+        forgetAttacks();
+        capturedPieces.clear();
+        hash = computeHash();
+    }
+
+    /**
+     * Creates a board from a position in Forsyth-Edwards Notation.
+     * @param fen The position, for example START_FEN.
+     * @return The new board.
+     * @throws IllegalArgumentException if the text is not a valid position.
+     */
+    public static Board fromFen(String fen) {
+        Board board = new Board();
+        board.setFen(fen);
+        return board;
+    }
+
+    /**
+     * Replaces the position with one in Forsyth-Edwards Notation, clearing the move history.
+     * The text is read character by character and the piece objects already on the board
+     * are reused, so loading many positions into one board allocates very little.
+     * The halfmove clock and fullmove number may be left out.
+     * @param fen The position, for example START_FEN.
+     * @throws IllegalArgumentException if the text is not a valid position; the board is then
+     *         reset to the starting position.
+     */
+    public void setFen(String fen) {
+        try {
+            parseFen(fen);
+        } catch (IllegalArgumentException e) {
+            initialize();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a position in Forsyth-Edwards Notation.
+     * @param fen The position.
+     * @throws IllegalArgumentException if the text is not a valid position.
+     */
+    private void parseFen(String fen) {
+        clearForLoad();
+        int i = 0;
+        int row = 0;
+        int col = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 8 || ++row > 7) {
+                    throw invalidFen(fen);
+                }
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int piece = FEN_PIECES.indexOf(c);
+                if (piece < 0 || col > 7) {
+                    throw invalidFen(fen);
+                }
+                placeForLoad(piece, row, col++);
+            }
+            if (col > 8) {
+                throw invalidFen(fen);
+            }
+        }
+        if (row != 7 || col != 8 || i + 2 > fen.length()) {
+            throw invalidFen(fen);
+        }
+
+        char side = fen.charAt(++i);
+        if (side != 'w' && side != 'b') {
+            throw invalidFen(fen);
+        }
+        i += 2;
+        int castling = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            int right = "KQkq".indexOf(fen.charAt(i)); // Bit order of the castling constants
+            if (right >= 0) {
+                castling |= 1 << right;
+            } else if (fen.charAt(i) != '-') {
+                throw invalidFen(fen);
+            }
+        }
+        int enPassant = NO_SQUARE;
+        if (++i < fen.length() && fen.charAt(i) != '-') {
+            if (i + 1 >= fen.length() || fen.charAt(i) < 'a' || fen.charAt(i) > 'h'
+                    || fen.charAt(i + 1) < '1' || fen.charAt(i + 1) > '8') {
+                throw invalidFen(fen);
+            }
+            enPassant = Bitboards.square('8' - fen.charAt(i + 1), fen.charAt(i) - 'a');
+            i++;
+        }
+        i += 2;
+        int halfmoves = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            halfmoves = halfmoves * 10 + digit(fen, i);
+        }
+        int fullmoves = 0;
+        for (i++; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            fullmoves = fullmoves * 10 + digit(fen, i);
+        }
+        finishLoad(side == 'w', castling, enPassant, halfmoves, fullmoves);
+    }
+
+    /**
+     * Writes the position in Forsyth-Edwards Notation.
+     * @return The position, such as START_FEN for the starting position.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = mailbox[Bitboards.square(row, col)];
+                if (piece < 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(FEN_PIECES.charAt(piece));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row < 7) {
+                fen.append('/');
+            }
+        }
+        fen.append(whiteToMove ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        }
+        for (int i = 0; i < 4; i++) {
+            if ((castlingRights & (1 << i)) != 0) {
+                fen.append("KQkq".charAt(i));
+            }
+        }
+        fen.append(' ').append(enPassantSquare == NO_SQUARE ? "-" : Move.squareName(enPassantSquare));
+        fen.append(' ').append(halfmoveClock).append(' ').append(getFullmoveNumber());
+        return fen.toString();
+    }
+
+    /**
+     * Writes the position into a buffer in a fixed-size binary form of ENCODED_SIZE bytes:
+     * the occupied squares as one long, then the piece index of each occupied square in
+     * ascending square order as one nibble each, then the side to move, castling rights and
+     * en passant column, then the halfmove clock and the fullmove number. The move history
+     * is not written. Nothing is allocated.
+     * @param buffer The buffer to write to, at its current position.
+     */
+    public void encode(ByteBuffer buffer) {
+        buffer.putLong(occupied);
+        long squares = occupied;
+        for (int i = 0; i < 16; i++) {
+            int high = nextPieceNibble(squares);
+            squares &= squares - 1;
+            int low = nextPieceNibble(squares);
+            squares &= squares - 1;
+            buffer.put((byte) (high << 4 | low));
+        }
+        int enPassantColumn = enPassantSquare == NO_SQUARE ? 0 : (enPassantSquare & 7) + 1;
+        buffer.putShort((short) ((whiteToMove ? 1 : 0) | castlingRights << 1 | enPassantColumn << 5));
+        buffer.put((byte) Math.min(halfmoveClock, 255));
+        buffer.putShort((short) getFullmoveNumber());
+    }
+
+    /**
+     * Replaces the position with one written by encode, clearing the move history.
+     * Like setFen, it reuses the piece objects already on the board.
+     * @param buffer The buffer to read from, at its current position.
+     * @throws IllegalArgumentException if the data is not a valid position; the board is then
+     *         reset to the starting position.
+     */
+    public void decode(ByteBuffer buffer) {
+        try {
+            decodePosition(buffer);
+        } catch (IllegalArgumentException e) {
+            initialize();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a position written by encode.
+     * @param buffer The buffer to read from, at its current position.
+     * @throws IllegalArgumentException if the data is not a valid position.
+     */
+    private void decodePosition(ByteBuffer buffer) {
+        clearForLoad();
+        long squares = buffer.getLong();
+        if (Long.bitCount(squares) > 32) {
+            throw new IllegalArgumentException("Invalid encoded position: more than 32 pieces");
+        }
+        for (int i = 0; i < 16; i++) {
+            int packed = buffer.get() & 0xFF;
+            for (int shift = 4; shift >= 0 && squares != 0L; shift -= 4) {
+                int square = Long.numberOfTrailingZeros(squares);
+                squares &= squares - 1;
+                int piece = packed >>> shift & 15;
+                if (piece >= 12) {
+                    throw new IllegalArgumentException("Invalid encoded position: bad piece " + piece);
+                }
+                placeForLoad(piece, square >>> 3, square & 7);
+            }
+        }
+        int state = buffer.getShort() & 0xFFFF;
+        int enPassantColumn = state >>> 5 & 15;
+        boolean white = (state & 1) != 0;
+        // The pawn that just moved two squares belongs to the side not to move
+        int enPassant = enPassantColumn == 0 ? NO_SQUARE : Bitboards.square(white ? 2 : 5, enPassantColumn - 1);
+        int halfmoves = buffer.get() & 0xFF;
+        int fullmoves = buffer.getShort() & 0xFFFF;
+        finishLoad(white, state >>> 1 & 15, enPassant, halfmoves, fullmoves);
+    }
+
+    /**
+     * Gets the nibble encode writes for the lowest occupied square of a set.
+     * @param squares The squares still to write.
+     * @return The piece index on the lowest square, or 0 if the set is empty.
+     */
+    private int nextPieceNibble(long squares) {
+        return squares == 0L ? 0 : mailbox[Long.numberOfTrailingZeros(squares)];
+    }
+
+    /**
+     * Takes every piece off the board ahead of a position load, keeping the objects for reuse.
+     */
+    private void clearForLoad() {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Piece piece = board[row][col];
+                if (piece != null) {
+                    int index = (piece.isWhite() ? 0 : 6) + piece.getType();
+                    if (poolSizes[index] < piecePool[index].length) {
+                        piecePool[index][poolSizes[index]++] = piece;
+                    }
+                    board[row][col] = null;
+                }
+            }
+        }
+        capturedPieces.clear();
+    }
+
+    /**
+     * Puts a piece on the array during a position load, reusing a pooled object if there is one.
+     * @param piece The piece index, color * 6 + type.
+     * @param row The row of the square.
+     * @param col The column of the square.
+     */
+    private void placeForLoad(int piece, int row, int col) {
+        Position position = Position.of(row, col);
+        Piece placed;
+        if (poolSizes[piece] > 0) {
+            placed = piecePool[piece][--poolSizes[piece]];
+            placed.setPosition(position);
+        } else {
+            placed = Piece.create(piece % 6, piece < 6, position);
+        }
+        board[row][col] = placed;
+    }
+
+    /**
+     * Completes a position load: rebuilds the bitboards and sets the game state, dropping
+     * castling rights whose king or rook is not on its starting square.
+     * @param white Whether white is to move.
+     * @param castling The castling rights.
+     * @param enPassant The en passant square, or NO_SQUARE.
+     * @param halfmoves The halfmove clock.
+     * @param fullmoves The fullmove number, or 0 if unknown.
+     * @throws IllegalArgumentException if a side has no king, more than one, or more than 16 pieces.
+     */
+    private void finishLoad(boolean white, int castling, int enPassant, int halfmoves, int fullmoves) {
+        for (int color = 0; color < 2; color++) {
+            int kings = 0;
+            int pieces = 0;
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    Piece piece = board[row][col];
+                    if (piece != null && piece.isWhite() == (color == WHITE)) {
+                        pieces++;
+                        kings += piece.getType() == Piece.KING ? 1 : 0;
+                    }
+                }
+            }
+            if (kings != 1 || pieces > 16) {
+                throw new IllegalArgumentException("Invalid position: " + (color == WHITE ? "white" : "black")
+                        + " has " + kings + " kings and " + pieces + " pieces");
+            }
+        }
+        rebuildBitboards();
+        for (int[] home : CASTLING_HOMES) {
+            int color = home[2] <= WHITE_QUEENSIDE ? WHITE : BLACK;
+            if (mailbox[home[0]] != color * 6 + Piece.KING || mailbox[home[1]] != color * 6 + Piece.ROOK) {
+                castling &= ~home[2];
+            }
+        }
+        castlingRights = castling;
+        enPassantSquare = enPassant == NO_SQUARE ? NO_SQUARE : capturableEnPassant(!white, enPassant);
+        halfmoveClock = halfmoves;
+        whiteToMove = white;
+        plyOffset = Math.max(0, fullmoves - 1) * 2 + (white ? 0 : 1);
+        undoCount = 0;
+        forgetAttacks();
+        hash = computeHash();
+    }
+
+    /**
+     * Reads one decimal digit of a FEN string.
+     * @param fen The FEN string.
+     * @param index The index of the digit.
+     * @return The digit's value.
+     */
+    private static int digit(String fen, int index) {
+        char c = fen.charAt(index);
+        if (c < '0' || c > '9') {
+            throw invalidFen(fen);
+        }
+        return c - '0';
+    }
+
+    /**
+     * Creates the exception thrown for a FEN string that cannot be read.
+     * @param fen The FEN string.
+     * @return The exception.
+     */
+    private static IllegalArgumentException invalidFen(String fen) {
+        return new IllegalArgumentException("Invalid FEN: " + fen);
+    }
+
+    /**
+     * Computes the Zobrist key of the position from scratch.
+     * @return The position key.
+     */
+    private long computeHash() {
+        long key = Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (!whiteToMove) {
+            key ^= Zobrist.side();
+        }
+        for (int piece = 0; piece < 12; piece++) {
+            long bits = pieceBitboards[piece];
+            while (bits != 0L) {
+                key ^= Zobrist.piece(piece, Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Gets the Zobrist key of the position, covering the pieces, the side to move,
+     * castling rights and the en passant square.
+     * @return The position key.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the Zobrist key of the pawns alone. Positions with the same pawns share it,
+     * whatever the other pieces, so it can key a cache of pawn structure scores.
+     * @return The pawn key.
+     */
+    public long getPawnHash() {
+        return pawnHash;
+    }
+
+    /**
+     * Rebuilds every bitboard from the piece array.
+     */
+    private void rebuildBitboards() {
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            pieceBitboards[i] = 0L;
+        }
+        colorBitboards[WHITE] = 0L;
+        colorBitboards[BLACK] = 0L;
+        occupied = 0L;
+        Arrays.fill(mailbox, -1);
+        Arrays.fill(kingSquares, NO_SQUARE);
+        pieceCounts[WHITE] = 0;
+        pieceCounts[BLACK] = 0;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        pawnHash = 0L;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                if (board[row][col] != null) {
+                    toggleBits(board[row][col], Bitboards.square(row, col));
+                }
+            }
+        }
+    }
+
+    /**
+     * Flips the bit of a square in the bitboards belonging to the given piece.
+     * Calling it once adds the piece to the square, calling it again removes it.
+     * @param piece The piece being added or removed.
+     * @param square The square index.
+     */
+    private void toggleBits(Piece piece, int square) {
+        long b = Bitboards.bit(square);
+        int color = piece.isWhite() ? WHITE : BLACK;
+        int index = color * 6 + piece.getType();
+        pieceBitboards[index] ^= b;
+        colorBitboards[color] ^= b;
+        occupied ^= b;
+        mailbox[square] = (occupied & b) != 0L ? index : -1;
+        if ((occupied & b) != 0L) {
+            int n = pieceCounts[color]++;
+            pieceSquares[color][n] = square;
+            listIndex[square] = n;
+            middlegameScore += PieceSquareTables.middlegame(index, square);
+            endgameScore += PieceSquareTables.endgame(index, square);
+            phase += PieceSquareTables.phaseWeight(piece.getType());
+        } else {
+            middlegameScore -= PieceSquareTables.middlegame(index, square);
+            endgameScore -= PieceSquareTables.endgame(index, square);
+            phase -= PieceSquareTables.phaseWeight(piece.getType());
+            // Move the last square of the list into the hole, so removal takes constant time
+            int last = pieceSquares[color][--pieceCounts[color]];
+            pieceSquares[color][listIndex[square]] = last;
+            listIndex[last] = listIndex[square];
+        }
+        if (piece.getType() == Piece.KING) {
+            kingSquares[color] = (occupied & b) != 0L ? square : NO_SQUARE;
+        }
+        hash ^= Zobrist.piece(index, square);
+        if (piece.getType() == Piece.PAWN) {
+            pawnHash ^= Zobrist.piece(index, square);
+        }
+    }
+
+    /**
+     * Gets the type of the piece standing on a square.
+     * @param square The square index.
+     * @return The piece type, or -1 if the square is empty.
+     */
+    public int pieceTypeAt(int square) {
+        int index = mailbox[square];
+        return index < 0 ? -1 : index % 6;
+    }
+
+    /**
+     * Gets the bitboard of one piece type and color.
+     * @param isWhite The color of the pieces.
+     * @param type The piece type, as defined in Piece.
+     * @return The squares holding those pieces.
+     */
+    public long getPieces(boolean isWhite, int type) {
+        return pieceBitboards[(isWhite ? WHITE : BLACK) * 6 + type];
+    }
+
+    /**
+     * Gets the bitboard of every piece of one color.
+     * @param isWhite The color of the pieces.
+     * @return The squares holding those pieces.
+     */
+    public long getPieces(boolean isWhite) {
+        return colorBitboards[isWhite ? WHITE : BLACK];
+    }
+
+    /**
+     * Gets the bitboard of every occupied square.
+     * @return The occupied squares.
+     */
+    public long getOccupied() {
+        return occupied;
     }
 
     /**
      * Moves a piece from one position to another.
+     * Pawns reaching the last row are promoted to a queen.
      * @param from The starting position.
      * @param to The ending position.
      * @return true if the move is valid and executed, false otherwise.
      */
     public boolean movePiece(Position from, Position to) {
         Piece piece = board[from.getRow()][from.getColumn()];
-        if (piece == null || !piece.validateMove(board, from.getRow(), from.getColumn(), to.getRow(), to.getColumn())) {
+        if (piece == null) {
+            return false;
+        }
+        int promotion = piece.getType() == Piece.PAWN && (to.getRow() == 0 || to.getRow() == 7) ? Piece.QUEEN : Move.NO_PROMOTION;
+        return movePiece(new Move(Bitboards.square(from.getRow(), from.getColumn()),
+                Bitboards.square(to.getRow(), to.getColumn()), promotion));
+    }
+
+    /**
+     * Plays a move if it is legal for the piece standing on its starting square.
+     * @param move The move to play.
+     * @return true if the move is valid and executed, false otherwise.
+     */
+    public boolean movePiece(Move move) {
+        Piece piece = board[move.getFromSquare() >>> 3][move.getFromSquare() & 7];
+        if (piece == null) {
+            return false;
+        }
+        generateLegalMoves(piece.isWhite(), scratchMoves);
+        int encoded = scratchMoves.find(move.pack());
+        if (encoded == Move.NONE) {
+            return false;
+        }
+        makeMove(encoded);
+        if (undoCaptured[undoCount - 1] != null) {
+            capturedPieces.add(undoCaptured[undoCount - 1]);
+        }
+        return true;
+    }
+
+    /**
+     * Executes a legal move given as a Move object.
+     * @param move The move to execute, which must be legal in the current position.
+     */
+    public void makeMove(Move move) {
+        makeMove(encodeMove(move));
+    }
+
+    /**
+     * Encodes a move of the current position, filling in the moving and captured pieces and the flag.
+     * @param move The move, which must start on an occupied square.
+     * @return The encoded move.
+     */
+    public int encodeMove(Move move) {
+        int from = move.getFromSquare();
+        int to = move.getToSquare();
+        int piece = pieceTypeAt(from);
+        int captured = pieceTypeAt(to);
+        int flag = Move.FLAG_NORMAL;
+        if (piece == Piece.PAWN && to == enPassantSquare) {
+            flag = Move.FLAG_EN_PASSANT;
+            captured = Piece.PAWN;
+        } else if (piece == Piece.PAWN && Math.abs(to - from) == 16) {
+            flag = Move.FLAG_DOUBLE_PUSH;
+        } else if (piece == Piece.KING && Math.abs(to - from) == 2) {
+            flag = Move.FLAG_CASTLING;
+        }
+        return Move.encode(from, to, move.getPromotion(), piece, captured, flag);
+    }
+
+    /**
+     * Executes a legal encoded move, including the rook move of castling, the pawn removed by
+     * en passant and promotion, and pushes an undo record so unmakeMove can take it back.
+     * Castling rights, the en passant square, the halfmove clock and the side to move are updated.
+     * @param move The encoded move, which must be legal in the current position.
+     */
+    public void makeMove(int move) {
+        int from = Move.fromSquare(move);
+        int to = Move.toSquare(move);
+        int flag = Move.flag(move);
+        if (undoCount == undoRecords.length) {
+            growUndoStack();
+        }
+        undoHashes[undoCount] = hash;
+        undoRecords[undoCount] = packUndo(from, to, castlingRights, enPassantSquare, halfmoveClock, whiteToMove);
+        undoMoves[undoCount] = move;
+        undoCaptured[undoCount] = null;
+        undoPawns[undoCount] = null;
+
+        Piece piece = removePiece(from);
+        boolean isWhite = piece.isWhite();
+        if (Move.isCapture(move)) {
+            int captureSquare = flag == Move.FLAG_EN_PASSANT ? (isWhite ? to + 8 : to - 8) : to;
+            undoCaptured[undoCount] = removePiece(captureSquare);
+        }
+
+        int promotion = Move.promotion(move);
+        if (promotion != Move.NO_PROMOTION) {
+            undoPawns[undoCount] = piece;
+            piece = promotedPiece(promotion, isWhite);
+        }
+        putPiece(piece, to);
+
+        if (flag == Move.FLAG_CASTLING) {
+            // The rook jumps to the square the king passed over
+            int rookFrom = to > from ? from + 3 : from - 4;
+            putPiece(removePiece(rookFrom), (from + to) / 2);
+        }
+
+        halfmoveClock = Move.piece(move) == Piece.PAWN || Move.isCapture(move) ? 0 : halfmoveClock + 1;
+        hash ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        enPassantSquare = flag == Move.FLAG_DOUBLE_PUSH ? capturableEnPassant(isWhite, (from + to) / 2) : NO_SQUARE;
+        hash ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (whiteToMove != !isWhite) {
+            hash ^= Zobrist.side();
+        }
+        whiteToMove = !isWhite;
+        undoCount++;
+        forgetAttacks();
+    }
+
+    /**
+     * Takes back the last move made with makeMove or movePiece, restoring the position exactly.
+     * @return true if a move was taken back, false if there was none.
+     */
+    public boolean unmakeMove() {
+        if (undoCount == 0) {
             return false;
         }
+        undoCount--;
+        long record = undoRecords[undoCount];
+        int from = (int) (record & 63);
+        int to = (int) (record >>> 6 & 63);
+        int previousEnPassant = (int) (record >>> 16 & 127) - 1;
+
+        Piece piece = removePiece(to);
+        if (piece.getType() == Piece.KING && Math.abs(to - from) == 2) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            putPiece(removePiece((from + to) / 2), rookFrom);
+        }
+        if (undoPawns[undoCount] != null) {
+            int index = (piece.isWhite() ? 0 : 6) + piece.getType();
+            if (poolSizes[index] < piecePool[index].length) {
+                piecePool[index][poolSizes[index]++] = piece;
+            }
+            piece = undoPawns[undoCount];
+            undoPawns[undoCount] = null;
+        }
+        putPiece(piece, from);
 
-        Piece target = board[to.getRow()][to.getColumn()];
-        if (target != null) {
-            capturedPieces.add(target);
+        Piece captured = undoCaptured[undoCount];
+        if (captured != null) {
+            int captureSquare = to;
+            if (piece.getType() == Piece.PAWN && to == previousEnPassant) {
+                captureSquare = piece.isWhite() ? to + 8 : to - 8;
+            }
+            putPiece(captured, captureSquare);
+            undoCaptured[undoCount] = null;
+            // Keep the game's capture list in step when a movePiece move is taken back
+            if (!capturedPieces.isEmpty() && capturedPieces.get(capturedPieces.size() - 1) == captured) {
+                capturedPieces.remove(capturedPieces.size() - 1);
+            }
         }
-        board[to.getRow()][to.getColumn()] = piece;
-        board[from.getRow()][from.getColumn()] = null;
-        piece.setPosition(to);
+
+        castlingRights = (int) (record >>> 12 & 15);
+        enPassantSquare = previousEnPassant;
+        whiteToMove = (record >>> 23 & 1) != 0;
+        halfmoveClock = (int) (record >>> 24 & 0xFFFF);
+        hash = undoHashes[undoCount];
         return true;
     }
 
+    /**
+     * Packs the state a move cannot restore by itself into one undo record.
+     * Layout: from (6 bits), to (6), castling rights (4), en passant square + 1 (7),
+     * side to move (1), halfmove clock (16).
+     */
+    private static long packUndo(int from, int to, int castling, int enPassant, int halfmoves, boolean white) {
+        return from | (long) to << 6 | (long) castling << 12 | (long) (enPassant + 1) << 16
+                | (white ? 1L : 0L) << 23 | (long) (halfmoves & 0xFFFF) << 24;
+    }
+
+    /**
+     * Doubles the capacity of the undo stack.
+     */
+    private void growUndoStack() {
+        undoRecords = Arrays.copyOf(undoRecords, undoRecords.length * 2);
+        undoMoves = Arrays.copyOf(undoMoves, undoMoves.length * 2);
+        undoHashes = Arrays.copyOf(undoHashes, undoHashes.length * 2);
+        undoCaptured = Arrays.copyOf(undoCaptured, undoCaptured.length * 2);
+        undoPawns = Arrays.copyOf(undoPawns, undoPawns.length * 2);
+        checkers = Arrays.copyOf(checkers, undoRecords.length + 1);
+        attacks[WHITE] = Arrays.copyOf(attacks[WHITE], undoRecords.length + 1);
+        attacks[BLACK] = Arrays.copyOf(attacks[BLACK], undoRecords.length + 1);
+    }
+
+    /**
+     * Marks the attack information of the current position as not yet computed.
+     * Entries for earlier positions stay valid, so taking a move back finds them again.
+     */
+    private void forgetAttacks() {
+        checkers[undoCount] = UNKNOWN;
+        attacks[WHITE][undoCount] = UNKNOWN;
+        attacks[BLACK][undoCount] = UNKNOWN;
+    }
+
+    /**
+     * Checks whose turn it is.
+     * @return true if it is white's turn, false otherwise.
+     */
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    /**
+     * Gets the number of moves played since the position was set up, all of which unmakeMove can take back.
+     * @return The length of the move history.
+     */
+    public int getHistoryLength() {
+        return undoCount;
+    }
+
+    /**
+     * Gets a move of the history, so that a game can be written out move by move.
+     * @param index The index of the move, from 0 for the first one played to getHistoryLength() - 1.
+     * @return The encoded move.
+     */
+    public int getHistoryMove(int index) {
+        return undoMoves[index];
+    }
+
+    /**
+     * Gets the number of moves since the last capture or pawn move.
+     * @return The halfmove clock.
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Gets the number of the current full move, which starts at 1 and increases after each black move.
+     * @return The fullmove number.
+     */
+    public int getFullmoveNumber() {
+        return (plyOffset + undoCount) / 2 + 1;
+    }
+
+    /**
+     * Counts the earlier occurrences of the current position. A capture or pawn move can never
+     * be undone, so only the positions since the last one are compared, which is at most the
+     * halfmove clock, and only every second one, since the same side must be to move.
+     * @return The number of times the position occurred before.
+     */
+    public int repetitionCount() {
+        int count = 0;
+        int window = Math.min(halfmoveClock, undoCount);
+        for (int back = 4; back <= window; back += 2) {
+            if (undoHashes[undoCount - back] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the current position occurred before. A search can score such a position
+     * as a draw, since the side that repeated it could repeat it again.
+     * @return true if the position is a repetition, false otherwise.
+     */
+    public boolean isRepetition() {
+        int window = Math.min(halfmoveClock, undoCount);
+        for (int back = 4; back <= window; back += 2) {
+            if (undoHashes[undoCount - back] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the current position has occurred three times, which ends the game in a draw.
+     * @return true if the position occurred at least twice before, false otherwise.
+     */
+    public boolean isThreefoldRepetition() {
+        return repetitionCount() >= 2;
+    }
+
+    /**
+     * Checks if fifty moves by each side have passed without a capture or pawn move,
+     * which ends the game in a draw unless the last move gave checkmate.
+     * @return true if the fifty-move rule applies, false otherwise.
+     */
+    public boolean isFiftyMoveRule() {
+        return halfmoveClock >= 100 && !isCheckmate(whiteToMove);
+    }
+
+    /**
+     * Checks if neither side can mate: only the kings and at most one knight or bishop are left.
+     * @return true if no mate is possible, false otherwise.
+     */
+    public boolean isInsufficientMaterial() {
+        if (Long.bitCount(occupied) > 3) {
+            return false;
+        }
+        for (int color = WHITE; color <= BLACK; color++) {
+            if ((pieceBitboards[color * 6 + Piece.PAWN] | pieceBitboards[color * 6 + Piece.ROOK]
+                    | pieceBitboards[color * 6 + Piece.QUEEN]) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the game is drawn by threefold repetition, the fifty-move rule or
+     * insufficient material. Stalemate is checked separately with isStalemate.
+     * @return true if the position is a draw by any of these rules, false otherwise.
+     */
+    public boolean isDraw() {
+        return isFiftyMoveRule() || isThreefoldRepetition() || isInsufficientMaterial();
+    }
+
+    /**
+     * Gets the castling moves that are still allowed.
+     * @return A bit set of WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and BLACK_QUEENSIDE.
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Keeps an en passant square only if an enemy pawn stands next to the pawn that moved two
+     * squares, so positions that differ in nothing a move can use get the same key and repeat.
+     * @param isWhite The color of the pawn that moved two squares.
+     * @param square The square it passed over.
+     * @return The square, or NO_SQUARE if no pawn can capture onto it.
+     */
+    private int capturableEnPassant(boolean isWhite, int square) {
+        long captors = pieceBitboards[(isWhite ? BLACK : WHITE) * 6 + Piece.PAWN];
+        return (Bitboards.pawnAttacks(isWhite, square) & captors) != 0L ? square : NO_SQUARE;
+    }
+
+    /**
+     * Gets the square a pawn can capture onto en passant.
+     * @return The en passant square, or NO_SQUARE.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * Places a piece on an empty square.
+     * @param piece The piece to place.
+     * @param square The square index.
+     */
+    private void putPiece(Piece piece, int square) {
+        board[square >>> 3][square & 7] = piece;
+        piece.setPosition(Position.of(square >>> 3, square & 7));
+        toggleBits(piece, square);
+    }
+
+    /**
+     * Gets the piece a pawn promotes to, reusing one taken back by an earlier unmakeMove so
+     * that promotions in the search do not allocate.
+     * @param type The piece type promoted to.
+     * @param isWhite The color of the pawn.
+     * @return The piece, placed by the caller.
+     */
+    private Piece promotedPiece(int type, boolean isWhite) {
+        int index = (isWhite ? 0 : 6) + type;
+        if (poolSizes[index] > 0) {
+            return piecePool[index][--poolSizes[index]];
+        }
+        return Piece.create(type, isWhite, null);
+    }
+
+    /**
+     * Removes the piece standing on a square.
+     * @param square The square index.
+     * @return The removed piece.
+     */
+    private Piece removePiece(int square) {
+        Piece piece = board[square >>> 3][square & 7];
+        board[square >>> 3][square & 7] = null;
+        toggleBits(piece, square);
+        return piece;
+    }
+
+    /**
+     * Generates every legal move for one color. Moves that would leave the king in check
+     * are filtered out, and castling, en passant and promotions are included.
+     * This allocates a list of Move objects; search code should use the MoveList overload.
+     * @param isWhite The color to generate moves for.
+     * @return The legal moves.
+     */
+    public List<Move> generateLegalMoves(boolean isWhite) {
+        MoveList list = new MoveList();
+        generateLegalMoves(isWhite, list);
+        List<Move> moves = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            moves.add(Move.of(list.get(i)));
+        }
+        return moves;
+    }
+
+    /**
+     * Generates every legal move for one color as encoded moves, without allocating.
+     * @param isWhite The color to generate moves for.
+     * @param moves The list to fill; it is cleared first.
+     */
+    public void generateLegalMoves(boolean isWhite, MoveList moves) {
+        moves.clear();
+        generate(isWhite, moves, TACTICAL | QUIET, ~0L, ~0L);
+    }
+
+    /**
+     * Generates the legal captures and promotions of the side to move, without allocating.
+     * @param moves The list to fill; it is cleared first.
+     */
+    public void generateCaptures(MoveList moves) {
+        moves.clear();
+        generate(whiteToMove, moves, TACTICAL, ~0L, ~0L);
+    }
+
+    /**
+     * Generates the legal moves of the side to move that neither capture nor promote,
+     * including castling, without allocating.
+     * @param moves The list to fill; it is cleared first.
+     */
+    public void generateQuiets(MoveList moves) {
+        moves.clear();
+        generate(whiteToMove, moves, QUIET, ~0L, ~0L);
+    }
+
+    /**
+     * Finds the legal move of the side to move that matches a packed move, generating only
+     * the moves of the piece on its starting square to its ending square. This checks a move
+     * remembered from another position, such as a hash or killer move, without generating
+     * every move.
+     * @param packed The move in the 16-bit form of Move.pack().
+     * @return The encoded legal move, or Move.NONE if it is not legal here.
+     */
+    public int legalMove(int packed) {
+        int from = packed & 63;
+        int piece = mailbox[from];
+        if (piece < 0 || (piece < 6) != whiteToMove) {
+            return Move.NONE;
+        }
+        scratchMoves.clear();
+        generate(whiteToMove, scratchMoves, TACTICAL | QUIET, Bitboards.bit(from), Bitboards.bit(packed >>> 6 & 63));
+        return scratchMoves.find(packed);
+    }
+
+    /**
+     * Appends the legal moves of one color of the chosen kinds to a list.
+     * @param isWhite The color to generate moves for.
+     * @param moves The list to add to.
+     * @param kinds TACTICAL for captures and promotions, QUIET for the other moves, or both.
+     * @param fromMask The squares whose pieces may move.
+     * @param toMask The squares the moves may end on; en passant captures ignore it.
+     */
+    private void generate(boolean isWhite, MoveList moves, int kinds, long fromMask, long toMask) {
+        long own = getPieces(isWhite);
+        long enemy = getPieces(!isWhite);
+        int kingSquare = kingSquares[isWhite ? WHITE : BLACK];
+
+        // Non-king moves must block or capture a single checker, and only the king may answer a double check
+        long checkMask = ~0L;
+        long pinned = 0L;
+        if (kingSquare != NO_SQUARE) {
+            long checks = isWhite == whiteToMove ? getCheckers() : attackersTo(kingSquare, !isWhite, occupied);
+            if (checks != 0L) {
+                checkMask = (checks & (checks - 1)) != 0L ? 0L
+                        : checks | Bitboards.between(kingSquare, Long.numberOfTrailingZeros(checks));
+            }
+            // Only a piece on a line through the king can be pinned, which a single piece often is not
+            if ((fromMask & own & Bitboards.queenAttacks(kingSquare, 0L)) != 0L) {
+                pinned = pinnedPieces(isWhite, kingSquare);
+            }
+        }
+        long kindMask = (((kinds & TACTICAL) != 0 ? enemy : 0L) | ((kinds & QUIET) != 0 ? ~occupied : 0L)) & toMask;
+        long targets = kindMask & checkMask;
+
+        long pawns = getPieces(isWhite, Piece.PAWN) & fromMask;
+        while (pawns != 0L) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            addPawnMoves(moves, isWhite, from, enemy, pinMask(pinned, kingSquare, from) & checkMask & toMask, kinds);
+        }
+        long knights = getPieces(isWhite, Piece.KNIGHT) & ~pinned & fromMask; // A pinned knight can never move
+        while (knights != 0L) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addMoves(moves, from, Piece.KNIGHT, Bitboards.knightAttacks(from) & targets);
+        }
+        long bishops = getPieces(isWhite, Piece.BISHOP) & fromMask;
+        while (bishops != 0L) {
+            int from = Long.numberOfTrailingZeros(bishops);
+            bishops &= bishops - 1;
+            addMoves(moves, from, Piece.BISHOP, Bitboards.bishopAttacks(from, occupied) & targets & pinMask(pinned, kingSquare, from));
+        }
+        long rooks = getPieces(isWhite, Piece.ROOK) & fromMask;
+        while (rooks != 0L) {
+            int from = Long.numberOfTrailingZeros(rooks);
+            rooks &= rooks - 1;
+            addMoves(moves, from, Piece.ROOK, Bitboards.rookAttacks(from, occupied) & targets & pinMask(pinned, kingSquare, from));
+        }
+        long queens = getPieces(isWhite, Piece.QUEEN) & fromMask;
+        while (queens != 0L) {
+            int from = Long.numberOfTrailingZeros(queens);
+            queens &= queens - 1;
+            addMoves(moves, from, Piece.QUEEN, Bitboards.queenAttacks(from, occupied) & targets & pinMask(pinned, kingSquare, from));
+        }
+        if (kingSquare != NO_SQUARE && (fromMask & Bitboards.bit(kingSquare)) != 0L) {
+            addKingMoves(moves, isWhite, kingSquare, Bitboards.kingAttacks(kingSquare) & kindMask);
+            long castlingTargets = Bitboards.bit(kingSquare) << 2 | Bitboards.bit(kingSquare) >>> 2;
+            if ((kinds & QUIET) != 0 && (toMask & castlingTargets) != 0L) {
+                addCastlingMoves(moves, isWhite, kingSquare);
+            }
+        }
+    }
+
+    /**
+     * Finds the pieces of one color that are pinned to their king, meaning each stands alone
+     * between the king and an opposing slider that would otherwise attack it.
+     * @param isWhite The color of the king.
+     * @param kingSquare The square of the king.
+     * @return The squares of the pinned pieces.
+     */
+    private long pinnedPieces(boolean isWhite, int kingSquare) {
+        long queens = getPieces(!isWhite, Piece.QUEEN);
+        long snipers = (Bitboards.rookAttacks(kingSquare, 0L) & (getPieces(!isWhite, Piece.ROOK) | queens))
+                | (Bitboards.bishopAttacks(kingSquare, 0L) & (getPieces(!isWhite, Piece.BISHOP) | queens));
+        long own = getPieces(isWhite);
+        long pinned = 0L;
+        while (snipers != 0L) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.between(kingSquare, sniper) & occupied;
+            if (blockers != 0L && (blockers & (blockers - 1)) == 0L) {
+                pinned |= blockers & own;
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * Gets the squares a piece may move to without exposing its king.
+     * @param pinned The squares of the pinned pieces.
+     * @param kingSquare The square of the king.
+     * @param from The square of the piece.
+     * @return The line through the king and the piece if it is pinned, otherwise every square.
+     */
+    private static long pinMask(long pinned, int kingSquare, int from) {
+        return (pinned & Bitboards.bit(from)) != 0L ? Bitboards.line(kingSquare, from) : ~0L;
+    }
+
+    /**
+     * Checks if a color has at least one legal move.
+     * @param isWhite The color to check.
+     * @return true if the color can move, false otherwise.
+     */
+    private boolean hasLegalMove(boolean isWhite) {
+        generateLegalMoves(isWhite, scratchMoves);
+        return !scratchMoves.isEmpty();
+    }
+
+    /**
+     * Adds the moves of a knight, bishop, rook or queen to a list.
+     * The targets must already be limited to squares that keep the king safe.
+     * @param moves The list to add to.
+     * @param from The square of the piece.
+     * @param piece The type of the piece.
+     * @param targets The squares the piece can legally reach.
+     */
+    private void addMoves(MoveList moves, int from, int piece, long targets) {
+        while (targets != 0L) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(Move.encode(from, to, Move.NO_PROMOTION, piece, pieceTypeAt(to), Move.FLAG_NORMAL));
+        }
+    }
+
+    /**
+     * Adds the king's steps that do not walk into an attack to a list.
+     * The king is taken off the board while testing, so it cannot hide behind itself from a slider.
+     * @param moves The list to add to.
+     * @param isWhite The color of the king.
+     * @param from The square of the king.
+     * @param targets The squares next to the king that are not held by its own pieces.
+     */
+    private void addKingMoves(MoveList moves, boolean isWhite, int from, long targets) {
+        long occupancy = occupied ^ Bitboards.bit(from);
+        while (targets != 0L) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (attackersTo(to, !isWhite, occupancy) == 0L) {
+                moves.add(Move.encode(from, to, Move.NO_PROMOTION, Piece.KING, pieceTypeAt(to), Move.FLAG_NORMAL));
+            }
+        }
+    }
+
+    /**
+     * Adds the legal pushes, captures, en passant captures and promotions of a pawn to a list.
+     * @param moves The list to add to.
+     * @param isWhite The color of the pawn.
+     * @param from The square of the pawn.
+     * @param enemy The squares of the opposing pieces.
+     * @param allowed The squares the pawn may move to without exposing its king.
+     * @param kinds TACTICAL for captures and promotions, QUIET for the other moves, or both.
+     */
+    private void addPawnMoves(MoveList moves, boolean isWhite, int from, long enemy, long allowed, int kinds) {
+        int forward = isWhite ? -8 : 8;
+        int startRow = isWhite ? 6 : 1;
+        int oneStep = from + forward;
+        boolean promotes = oneStep >>> 3 == (isWhite ? 0 : 7);
+        if ((occupied & Bitboards.bit(oneStep)) == 0L) {
+            // A push is quiet unless it promotes
+            if ((allowed & Bitboards.bit(oneStep)) != 0L && (kinds & (promotes ? TACTICAL : QUIET)) != 0) {
+                addPawnMove(moves, from, oneStep, oneStep, Move.FLAG_NORMAL);
+            }
+            int twoSteps = oneStep + forward;
+            if (from >>> 3 == startRow && (kinds & QUIET) != 0
+                    && (occupied & Bitboards.bit(twoSteps)) == 0L && (allowed & Bitboards.bit(twoSteps)) != 0L) {
+                addPawnMove(moves, from, twoSteps, twoSteps, Move.FLAG_DOUBLE_PUSH);
+            }
+        }
+        if ((kinds & TACTICAL) == 0) {
+            return;
+        }
+        long captures = Bitboards.pawnAttacks(isWhite, from) & enemy & allowed;
+        while (captures != 0L) {
+            int to = Long.numberOfTrailingZeros(captures);
+            captures &= captures - 1;
+            addPawnMove(moves, from, to, to, Move.FLAG_NORMAL);
+        }
+        // Only the opponent's last double step can be taken en passant: its square is on row 2 for black pawns, row 5 for white ones.
+        // It removes two pieces from one row, which pins cannot see, so it is tested on the resulting occupancy instead.
+        if (enPassantSquare != NO_SQUARE && enPassantSquare >>> 3 == (isWhite ? 2 : 5)
+                && (Bitboards.pawnAttacks(isWhite, from) & Bitboards.bit(enPassantSquare)) != 0L
+                && leavesKingSafe(isWhite, from, enPassantSquare, enPassantSquare - forward)) {
+            addPawnMove(moves, from, enPassantSquare, enPassantSquare - forward, Move.FLAG_EN_PASSANT);
+        }
+    }
+
+    /**
+     * Adds a legal pawn move to a list, expanding it into the four promotions on the last row.
+     * @param moves The list to add to.
+     * @param from The starting square.
+     * @param to The ending square.
+     * @param captureSquare The square of the captured piece, which differs from to for en passant.
+     * @param flag The move flag.
+     */
+    private void addPawnMove(MoveList moves, int from, int to, int captureSquare, int flag) {
+        int captured = pieceTypeAt(captureSquare);
+        int row = to >>> 3;
+        if (row == 0 || row == 7) {
+            moves.add(Move.encode(from, to, Piece.QUEEN, Piece.PAWN, captured, flag));
+            moves.add(Move.encode(from, to, Piece.ROOK, Piece.PAWN, captured, flag));
+            moves.add(Move.encode(from, to, Piece.BISHOP, Piece.PAWN, captured, flag));
+            moves.add(Move.encode(from, to, Piece.KNIGHT, Piece.PAWN, captured, flag));
+        } else {
+            moves.add(Move.encode(from, to, Move.NO_PROMOTION, Piece.PAWN, captured, flag));
+        }
+    }
+
+    /**
+     * Adds the castling moves that are still allowed and currently possible to a list.
+     * The king may not castle out of, through or into check.
+     * @param moves The list to add to.
+     * @param isWhite The color of the king.
+     * @param kingSquare The square of the king.
+     */
+    private void addCastlingMoves(MoveList moves, boolean isWhite, int kingSquare) {
+        int kingside = isWhite ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = isWhite ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        int homeSquare = isWhite ? 60 : 4;
+        if (kingSquare != homeSquare || (castlingRights & (kingside | queenside)) == 0
+                || isInCheck(isWhite)) {
+            return;
+        }
+        if ((castlingRights & kingside) != 0
+                && (occupied & (Bitboards.bit(kingSquare + 1) | Bitboards.bit(kingSquare + 2))) == 0L
+                && attackersTo(kingSquare + 1, !isWhite, occupied) == 0L
+                && attackersTo(kingSquare + 2, !isWhite, occupied) == 0L) {
+            moves.add(Move.encode(kingSquare, kingSquare + 2, Move.NO_PROMOTION, Piece.KING, -1, Move.FLAG_CASTLING));
+        }
+        if ((castlingRights & queenside) != 0
+                && (occupied & (Bitboards.bit(kingSquare - 1) | Bitboards.bit(kingSquare - 2) | Bitboards.bit(kingSquare - 3))) == 0L
+                && attackersTo(kingSquare - 1, !isWhite, occupied) == 0L
+                && attackersTo(kingSquare - 2, !isWhite, occupied) == 0L) {
+            moves.add(Move.encode(kingSquare, kingSquare - 2, Move.NO_PROMOTION, Piece.KING, -1, Move.FLAG_CASTLING));
+        }
+    }
+
+    /**
+     * Checks whether a move keeps its own king out of check, without executing it.
+     * @param isWhite The color making the move.
+     * @param from The starting square.
+     * @param to The ending square.
+     * @param captureSquare The square of the captured piece, if any.
+     * @return true if the king is safe after the move, false otherwise.
+     */
+    private boolean leavesKingSafe(boolean isWhite, int from, int to, int captureSquare) {
+        int kingSquare = kingSquares[isWhite ? WHITE : BLACK];
+        if (kingSquare == NO_SQUARE) {
+            return true;
+        }
+        if (kingSquare == from) {
+            kingSquare = to;
+        }
+        long captured = Bitboards.bit(captureSquare) & getPieces(!isWhite);
+        long occupancy = (occupied & ~Bitboards.bit(from) & ~captured) | Bitboards.bit(to);
+        return (attackersTo(kingSquare, !isWhite, occupancy) & ~captured) == 0L;
+    }
+
     /**
      * Retrieves a piece from the specified position.
      * @param position The position of the piece.
@@ -110,8 +1442,164 @@ public class Board {
      * @return true if the color is in check, false otherwise.
      */
     public boolean isInCheck(boolean isWhite) {
-        Position kingPosition = findKingPosition(isWhite);
-        return isUnderAttack(kingPosition, !isWhite);
+        if (isWhite == whiteToMove) {
+            return getCheckers() != 0L;
+        }
+        int kingSquare = kingSquares[isWhite ? WHITE : BLACK];
+        return kingSquare != NO_SQUARE && attackersTo(kingSquare, !isWhite, occupied) != 0L;
+    }
+
+    /**
+     * Checks if the side to move is in check. After the first call for a position this
+     * is a single array lookup, and it stays cached while moves are made and taken back.
+     * @return true if the side to move is in check, false otherwise.
+     */
+    public boolean isInCheck() {
+        return getCheckers() != 0L;
+    }
+
+    /**
+     * Finds the pieces giving check to the side to move, computing them once per position.
+     * @return The squares of the checking pieces, or 0 if the side to move is not in check.
+     */
+    public long getCheckers() {
+        long cached = checkers[undoCount];
+        if (cached == UNKNOWN) {
+            int kingSquare = kingSquares[whiteToMove ? WHITE : BLACK];
+            cached = kingSquare == NO_SQUARE ? 0L : attackersTo(kingSquare, !whiteToMove, occupied);
+            checkers[undoCount] = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Gets the material and piece-square score of the position for the middlegame.
+     * It is kept up to date as pieces are added and removed, so reading it costs nothing.
+     * @return The score in centipawns, positive when white is better.
+     */
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    /**
+     * Gets the material and piece-square score of the position for the endgame.
+     * @return The score in centipawns, positive when white is better.
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * Gets the game phase, which falls from PieceSquareTables.MAX_PHASE at the start towards 0
+     * as pieces other than pawns are traded. Promotions can take it above the maximum.
+     * @return The sum of the phase weights of the pieces on the board.
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Gets the number of pieces a color has on the board, kept up to date on every move.
+     * @param isWhite The color of the pieces.
+     * @return The number of pieces, including the king.
+     */
+    public int getPieceCount(boolean isWhite) {
+        return pieceCounts[isWhite ? WHITE : BLACK];
+    }
+
+    /**
+     * Gets one entry of a color's piece list. The order of the list changes as pieces are
+     * captured, so indexes are only meaningful until the next move.
+     * @param isWhite The color of the pieces.
+     * @param index The index in the list, below getPieceCount.
+     * @return The square index of the piece.
+     */
+    public int getPieceSquare(boolean isWhite, int index) {
+        return pieceSquares[isWhite ? WHITE : BLACK][index];
+    }
+
+    /**
+     * Gets the pieces a color still has on the board.
+     * @param isWhite The color of the pieces.
+     * @return A new list of the pieces, in the order of the piece list.
+     */
+    public List<Piece> getPieceList(boolean isWhite) {
+        int color = isWhite ? WHITE : BLACK;
+        List<Piece> pieces = new ArrayList<>(pieceCounts[color]);
+        for (int i = 0; i < pieceCounts[color]; i++) {
+            int square = pieceSquares[color][i];
+            pieces.add(board[square >>> 3][square & 7]);
+        }
+        return pieces;
+    }
+
+    /**
+     * Gets the square of a color's king, which the board tracks on every move.
+     * @param isWhite The color of the king.
+     * @return The square index, or NO_SQUARE if that color has no king.
+     */
+    public int getKingSquare(boolean isWhite) {
+        return kingSquares[isWhite ? WHITE : BLACK];
+    }
+
+    /**
+     * Gets every square a color attacks, computing the map once per position.
+     * @param isWhite The attacking color.
+     * @return The attacked squares.
+     */
+    public long getAttacks(boolean isWhite) {
+        int color = isWhite ? WHITE : BLACK;
+        long cached = attacks[color][undoCount];
+        if (cached == UNKNOWN) {
+            cached = computeAttacks(isWhite);
+            attacks[color][undoCount] = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Counts the pieces of one color that attack a square.
+     * @param square The square index.
+     * @param isWhite The attacking color.
+     * @return The number of attackers.
+     */
+    public int attackCount(int square, boolean isWhite) {
+        if ((getAttacks(isWhite) & Bitboards.bit(square)) == 0L) {
+            return 0;
+        }
+        return Long.bitCount(attackersTo(square, isWhite, occupied));
+    }
+
+    /**
+     * Computes every square a color attacks from scratch.
+     * @param isWhite The attacking color.
+     * @return The attacked squares.
+     */
+    private long computeAttacks(boolean isWhite) {
+        int color = isWhite ? WHITE : BLACK;
+        long map = kingSquares[color] == NO_SQUARE ? 0L : Bitboards.kingAttacks(kingSquares[color]);
+        long pawns = pieceBitboards[color * 6 + Piece.PAWN];
+        while (pawns != 0L) {
+            map |= Bitboards.pawnAttacks(isWhite, Long.numberOfTrailingZeros(pawns));
+            pawns &= pawns - 1;
+        }
+        long knights = pieceBitboards[color * 6 + Piece.KNIGHT];
+        while (knights != 0L) {
+            map |= Bitboards.knightAttacks(Long.numberOfTrailingZeros(knights));
+            knights &= knights - 1;
+        }
+        long queens = pieceBitboards[color * 6 + Piece.QUEEN];
+        long diagonal = pieceBitboards[color * 6 + Piece.BISHOP] | queens;
+        while (diagonal != 0L) {
+            map |= Bitboards.bishopAttacks(Long.numberOfTrailingZeros(diagonal), occupied);
+            diagonal &= diagonal - 1;
+        }
+        long straight = pieceBitboards[color * 6 + Piece.ROOK] | queens;
+        while (straight != 0L) {
+            map |= Bitboards.rookAttacks(Long.numberOfTrailingZeros(straight), occupied);
+            straight &= straight - 1;
+        }
+        return map;
     }
 
     /**
@@ -120,73 +1608,114 @@ public class Board {
      * @return true if the color is in checkmate, false otherwise.
      */
     public boolean isCheckmate(boolean isWhite) {
-        if (!isInCheck(isWhite)) {
-            return false;
-        }
-        // Try all possible moves to see if any of them can remove the check
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board[row][col];
-                if (piece != null && piece.isWhite() == isWhite) {
-                    Position from = new Position(row, col);
-                    for (int newRow = 0; newRow < 8; newRow++) {
-                        for (int newCol = 0; newCol < 8; newCol++) {
-                            Position to = new Position(newRow, newCol);
-                            if (piece.validateMove(board, row, col, newRow, newCol)) {
-                                Piece temp = board[newRow][newCol];
-                                board[newRow][newCol] = piece;
-                                board[row][col] = null;
-                                piece.setPosition(to);
-                                boolean stillInCheck = isInCheck(isWhite);
-                                board[row][col] = piece;
-                                board[newRow][newCol] = temp;
-                                piece.setPosition(from);
-                                if (!stillInCheck) {
-                                    return false;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return true;
+        return isInCheck(isWhite) && !hasLegalMove(isWhite);
     }
 
     /**
-     * Finds the position of the king for a given color.
-     * @param isWhite The color of the king.
-     * @return The position of the king.
+     * Checks if a given color is stalemated, meaning it is not in check but has no legal move.
+     * @param isWhite The color to check.
+     * @return true if the color is stalemated, false otherwise.
      */
-    private Position findKingPosition(boolean isWhite) {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board[row][col];
-                if (piece instanceof King && piece.isWhite() == isWhite) {
-                    return new Position(row, col);
-                }
+    public boolean isStalemate(boolean isWhite) {
+        return !isInCheck(isWhite) && !hasLegalMove(isWhite);
+    }
+
+    /**
+     * Finds every piece of one color that attacks a square.
+     * @param square The square index.
+     * @param isWhite The attacking color.
+     * @param occupancy The occupied squares that block sliding pieces.
+     * @return The squares of the attacking pieces.
+     */
+    public long attackersTo(int square, boolean isWhite, long occupancy) {
+        long queens = getPieces(isWhite, Piece.QUEEN);
+        // A pawn of the attacking color attacks this square if a pawn of the other color here would attack it back
+        return (Bitboards.pawnAttacks(!isWhite, square) & getPieces(isWhite, Piece.PAWN))
+                | (Bitboards.knightAttacks(square) & getPieces(isWhite, Piece.KNIGHT))
+                | (Bitboards.kingAttacks(square) & getPieces(isWhite, Piece.KING))
+                | (Bitboards.bishopAttacks(square, occupancy) & (getPieces(isWhite, Piece.BISHOP) | queens))
+                | (Bitboards.rookAttacks(square, occupancy) & (getPieces(isWhite, Piece.ROOK) | queens));
+    }
+
+    /**
+     * Works out the material result of the capture sequence a move starts on its target
+     * square, assuming both sides recapture with their least valuable piece for as long as it
+     * pays. Sliders lined up behind a capturing piece join in once it has moved. Pins are
+     * ignored, so the result is an estimate.
+     * @param move The encoded move, usually a capture.
+     * @return The expected material gain in centipawns for the side making the move.
+     */
+    public int see(int move) {
+        int from = Move.fromSquare(move);
+        int to = Move.toSquare(move);
+        int[] gain = exchangeGains;
+        int captured = Move.captured(move);
+        gain[0] = captured >= 0 ? EXCHANGE_VALUES[captured] : 0;
+        int attacker = Move.piece(move);
+        if (Move.promotion(move) != Move.NO_PROMOTION) {
+            attacker = Move.promotion(move);
+            gain[0] += EXCHANGE_VALUES[attacker] - EXCHANGE_VALUES[Piece.PAWN];
+        }
+        boolean side = mailbox[from] < 6; // true while white is to capture
+        long occupancy = occupied ^ Bitboards.bit(from);
+        if (Move.flag(move) == Move.FLAG_EN_PASSANT) {
+            occupancy ^= Bitboards.bit(to + (side ? 8 : -8));
+        }
+        long attackers = (attackersTo(to, true, occupancy) | attackersTo(to, false, occupancy)) & occupancy;
+        int depth = 0;
+        while (true) {
+            depth++;
+            side = !side;
+            // The piece just moved is now the target; this gain only counts if it can be taken
+            gain[depth] = EXCHANGE_VALUES[attacker] - gain[depth - 1];
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                break;
+            }
+            long own = attackers & getPieces(side);
+            if (own == 0L) {
+                break;
             }
+            int type = Piece.PAWN;
+            while ((own & getPieces(side, type)) == 0L) {
+                type++;
+            }
+            // A king may only capture last, onto a square the other side no longer guards
+            if (type == Piece.KING && (attackers & getPieces(!side)) != 0L) {
+                break;
+            }
+            occupancy ^= Long.lowestOneBit(own & getPieces(side, type));
+            attackers = (attackersTo(to, true, occupancy) | attackersTo(to, false, occupancy)) & occupancy;
+            attacker = type;
         }
-        return null;
+        while (--depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        }
+        return gain[0];
     }
 
     /**
-     * Checks if a given position is under attack by the opposite color.
-     * @param position The position to check.
-     * @param isWhite The attacking color.
-     * @return true if the position is under attack, false otherwise.
+     * Finds the pieces of one color that can be won outright: each is attacked, and the
+     * cheapest attacker's capture comes out ahead according to see.
+     * @param isWhite The color of the pieces.
+     * @return The squares of the hanging pieces.
      */
-    private boolean isUnderAttack(Position position, boolean isWhite) {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board[row][col];
-                if (piece != null && piece.isWhite() == isWhite) {
-                    if (piece.validateMove(board, row, col, position.getRow(), position.getColumn())) {
-                        return true;
-                    }
-                }
+    public long getHangingPieces(boolean isWhite) {
+        long hanging = 0L;
+        long targets = getAttacks(!isWhite) & getPieces(isWhite) & ~getPieces(isWhite, Piece.KING);
+        while (targets != 0L) {
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            long attackers = attackersTo(square, !isWhite, occupied);
+            int type = Piece.PAWN;
+            while ((attackers & getPieces(!isWhite, type)) == 0L) {
+                type++;
+            }
+            int from = Long.numberOfTrailingZeros(attackers & getPieces(!isWhite, type));
+            int move = Move.encode(from, square, Move.NO_PROMOTION, type, pieceTypeAt(square), Move.FLAG_NORMAL);
+            if (see(move) > 0) {
+                hanging |= Bitboards.bit(square);
             }
         }
-        return false;
+        return hanging;
     }
 }
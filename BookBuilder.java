@@ -0,0 +1,354 @@
+package book;
+
+import board.Board;
+import pgn.PgnGame;
+import pgn.PgnReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class builds an opening book from games. Each game is replayed once and every move
+ * of its opening is counted under the key of the position it was played in, so an archive
+ * is read in a single streaming pass; the counts are then sorted by key and written out in
+ * the layout OpeningBook reads, after a header naming the version of the keys.
+ *
+ * A move scores 2 for each game its side won and 1 for each draw, and moves that never
+ * scored are left out. Counts are kept in open-addressing arrays rather than a map of boxed
+ * keys, so millions of positions fit in little memory.
+ */
+public class BookBuilder {
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private int maxPly = 30; // Moves after this many plies are not counted
+    private int minGames = 1; // Moves played in fewer games are left out
+    private final Board board; // Replays each game
+
+    // Hash table of (key, book move) pairs; a book move of 0 marks an empty slot
+    private long[] keys;
+    private int[] moves;
+    private int[] scores;
+    private int[] games; // Number of games each move was played in
+    private int size;
+
+    /**
+     * Constructs an empty BookBuilder.
+     */
+    public BookBuilder() {
+        this.board = new Board();
+        allocate(1 << 16);
+    }
+
+    /**
+     * Sets how deep into each game moves are counted.
+     *
+     * @param maxPly The number of plies, counting each side's move separately.
+     */
+    public void setMaxPly(int maxPly) {
+        this.maxPly = maxPly;
+    }
+
+    /**
+     * Sets how many games a move must appear in to be written to the book.
+     *
+     * @param minGames The minimum number of games.
+     */
+    public void setMinGames(int minGames) {
+        this.minGames = minGames;
+    }
+
+    /**
+     * Gets the number of distinct position and move pairs counted so far.
+     *
+     * @return The pair count.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Counts the opening moves of a game. Unfinished games are skipped, since they say
+     * nothing about which moves did well.
+     *
+     * @param game The game.
+     */
+    public void addGame(PgnGame game) {
+        String result = game.getResult();
+        if (result.equals(PgnGame.UNFINISHED)) {
+            return;
+        }
+        board.setFen(game.getStartFen());
+        int plies = Math.min(game.getMoveCount(), maxPly);
+        for (int i = 0; i < plies; i++) {
+            int move = game.getMove(i);
+            int score;
+            if (result.equals(PgnGame.DRAW)) {
+                score = 1;
+            } else {
+                score = result.equals(PgnGame.WHITE_WINS) == board.isWhiteToMove() ? 2 : 0;
+            }
+            add(board.getHash(), OpeningBook.toBookMove(move), score);
+            board.makeMove(move);
+        }
+    }
+
+    /**
+     * Counts the opening moves of every remaining game of a PGN file.
+     *
+     * @param reader The reader of the file.
+     * @return The number of games read.
+     * @throws IOException if the file cannot be read.
+     */
+    public long addGames(PgnReader reader) throws IOException {
+        return reader.read(this::addGame);
+    }
+
+    /**
+     * Writes the counted moves to a book file, sorted by key and, within a position, by weight.
+     * The builder is emptied afterwards.
+     *
+     * @param path The file to write; an existing file is replaced.
+     * @return The number of entries written.
+     * @throws IOException if the file cannot be written.
+     */
+    public int write(Path path) throws IOException {
+        // Gather the kept entries at the front of the arrays, then sort them in place
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (moves[i] != 0 && scores[i] > 0 && games[i] >= minGames) {
+                keys[count] = keys[i];
+                moves[count] = moves[i];
+                scores[count] = scores[i];
+                count++;
+            }
+        }
+        sort(0, count - 1);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(OpeningBook.ENTRY_SIZE * 4096);
+            buffer.putLong(OpeningBook.MAGIC).putInt(OpeningBook.KEY_VERSION).putInt(count);
+            int start = 0;
+            while (start < count) {
+                // Weights only have 16 bits, so a position's scores are scaled down together when any is too large
+                int end = start;
+                int highest = 0;
+                while (end < count && keys[end] == keys[start]) {
+                    highest = Math.max(highest, scores[end]);
+                    end++;
+                }
+                for (int i = start; i < end; i++) {
+                    int weight = highest > MAX_WEIGHT ? (int) Math.max(1, (long) scores[i] * MAX_WEIGHT / highest) : scores[i];
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putLong(keys[i]).putShort((short) moves[i]).putShort((short) weight).putInt(0);
+                }
+                start = end;
+            }
+            flush(channel, buffer);
+        } finally {
+            // The gathered entries no longer form a hash table, so counting starts over
+            size = 0;
+            allocate(1 << 16);
+        }
+        return count;
+    }
+
+    /**
+     * Adds the score of one move to the table.
+     *
+     * @param key      The key of the position.
+     * @param bookMove The move in the OpeningBook format, never 0.
+     * @param score    The score to add.
+     */
+    private void add(long key, int bookMove, int score) {
+        if (size * 2 >= keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = (int) mix(key, bookMove) & mask;
+        while (moves[slot] != 0 && (keys[slot] != key || moves[slot] != bookMove)) {
+            slot = (slot + 1) & mask;
+        }
+        if (moves[slot] == 0) {
+            keys[slot] = key;
+            moves[slot] = bookMove;
+            size++;
+        }
+        scores[slot] += score;
+        games[slot]++;
+    }
+
+    /**
+     * Doubles the table, placing every entry again.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldMoves = moves;
+        int[] oldScores = scores;
+        int[] oldGames = games;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldMoves[i] != 0) {
+                int slot = (int) mix(oldKeys[i], oldMoves[i]) & mask;
+                while (moves[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                moves[slot] = oldMoves[i];
+                scores[slot] = oldScores[i];
+                games[slot] = oldGames[i];
+            }
+        }
+    }
+
+    /**
+     * Replaces the table with an empty one.
+     *
+     * @param capacity The number of slots, a power of two.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        moves = new int[capacity];
+        scores = new int[capacity];
+        games = new int[capacity];
+    }
+
+    /**
+     * Mixes a key and a move into a slot number.
+     *
+     * @param key      The position key.
+     * @param bookMove The book move.
+     * @return The mixed bits.
+     */
+    private static long mix(long key, int bookMove) {
+        long h = key ^ bookMove * 0x9E3779B97F4A7C15L;
+        return h ^ h >>> 29;
+    }
+
+    /**
+     * Sorts entries by key as an unsigned number, then by score from highest to lowest.
+     * The three parallel arrays are sorted together, so no entry objects are created.
+     *
+     * @param low  The first index to sort.
+     * @param high The last index to sort.
+     */
+    private void sort(int low, int high) {
+        while (low < high) {
+            int i = low;
+            int j = high;
+            int pivot = (low + high) >>> 1;
+            long pivotKey = keys[pivot];
+            int pivotScore = scores[pivot];
+            while (i <= j) {
+                while (compare(i, pivotKey, pivotScore) < 0) {
+                    i++;
+                }
+                while (compare(j, pivotKey, pivotScore) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Recurse into the smaller side so the stack stays shallow
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * Compares an entry with a pivot in the book order.
+     *
+     * @param index The entry index.
+     * @param key   The pivot key.
+     * @param score The pivot score.
+     * @return A negative number if the entry comes first, positive if it comes after, 0 if equal.
+     */
+    private int compare(int index, long key, int score) {
+        int byKey = Long.compareUnsigned(keys[index], key);
+        return byKey != 0 ? byKey : Integer.compare(score, scores[index]);
+    }
+
+    /**
+     * Swaps two entries.
+     *
+     * @param i The first entry.
+     * @param j The second entry.
+     */
+    private void swap(int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    /**
+     * Writes out the filled part of a buffer and empties it.
+     *
+     * @param channel The file.
+     * @param buffer  The buffer.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Builds a book from a PGN file.
+     *
+     * @param args The PGN file, the book file, then optionally --max-ply n and --min-games n.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java book.BookBuilder games.pgn book.bin [--max-ply n] [--min-games n]");
+            return;
+        }
+        BookBuilder builder = new BookBuilder();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--max-ply")) {
+                builder.setMaxPly(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--min-games")) {
+                builder.setMinGames(Integer.parseInt(args[++i]));
+            }
+        }
+        long start = System.nanoTime();
+        long gameCount;
+        long skipped;
+        String lastError;
+        try (PgnReader reader = new PgnReader(Paths.get(args[0]))) {
+            gameCount = builder.addGames(reader);
+            skipped = reader.getGamesSkipped();
+            lastError = reader.getLastError();
+        }
+        int entries = builder.write(Paths.get(args[1]));
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000L);
+        System.out.println("Games: " + gameCount);
+        if (skipped > 0) {
+            System.out.println("Skipped: " + skipped + " (last: " + lastError + ")");
+        }
+        System.out.println("Entries: " + entries);
+        System.out.println("Time: " + elapsed + " ms");
+    }
+}
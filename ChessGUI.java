@@ -1,9 +1,13 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import board.Board;
+import pgn.PgnGame;
+import pgn.PgnWriter;
+import pgn.San;
 import pieces.Piece;
 import pieces.Position;
 
@@ -25,6 +29,9 @@ public class ChessGUI {
     private Point firstClick = null; // To store the first click of the user
     private Board board; // Board object to manage the game logic
     private boolean whiteTurn = true; // To track which player's turn it is
+    private String player1Name; // Name of the white player, for saved games
+    private String player2Name; // Name of the black player
+    private String result = PgnGame.UNFINISHED; // The PGN result, set when the game ends
 
     /**
      * Constructs the ChessGUI with player names.
@@ -34,6 +41,8 @@ public class ChessGUI {
      */
     public ChessGUI(String player1Name, String player2Name) {
         board = new Board(); // Initialize the Board
+        this.player1Name = player1Name;
+        this.player2Name = player2Name;
         frame = new JFrame("Chess Game");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(800, 800);
@@ -100,7 +109,12 @@ public class ChessGUI {
         movementList = new JList<>(movementListModel); // Initialize the movement list
         JScrollPane scrollPane = new JScrollPane(movementList); // Add a scroll pane to the movement list
         scrollPane.setPreferredSize(new Dimension(200, 0)); // Set preferred width for the scroll pane
-        frame.add(scrollPane, BorderLayout.EAST); // Add the scroll pane to the frame
+        JButton saveButton = new JButton("Save PGN");
+        saveButton.addActionListener(e -> saveGame()); // Save the moves played so far
+        JPanel movesPanel = new JPanel(new BorderLayout());
+        movesPanel.add(scrollPane, BorderLayout.CENTER);
+        movesPanel.add(saveButton, BorderLayout.SOUTH);
+        frame.add(movesPanel, BorderLayout.EAST); // Add the moves panel to the frame
         movements = new ArrayList<>(); // Initialize the movements list
     }
 
@@ -135,16 +149,32 @@ public class ChessGUI {
             Position to = new Position(row, col); // Get the to position
             if (board.movePiece(from, to)) { // Move the piece on the board
                 updateBoard(); // Update the board to reflect the move
-                recordMovement(from, to); // Record the move in the movement list
+                recordMovement(); // Record the move in the movement list
 
-                // Check for check and checkmate
-                if (board.isInCheck(!whiteTurn)) {
-                    JOptionPane.showMessageDialog(frame, "Check!");
-                }
+                // Check for check, checkmate, stalemate and draws
                 if (board.isCheckmate(!whiteTurn)) {
                     JOptionPane.showMessageDialog(frame, "Checkmate! " + (whiteTurn ? "White" : "Black") + " wins!");
+                    result = whiteTurn ? PgnGame.WHITE_WINS : PgnGame.BLACK_WINS;
                     // Disable further clicks after checkmate
                     disableBoard();
+                } else if (board.isStalemate(!whiteTurn)) {
+                    JOptionPane.showMessageDialog(frame, "Stalemate! The game is a draw.");
+                    result = PgnGame.DRAW;
+                    disableBoard();
+                } else if (board.isThreefoldRepetition()) {
+                    JOptionPane.showMessageDialog(frame, "Threefold repetition! The game is a draw.");
+                    result = PgnGame.DRAW;
+                    disableBoard();
+                } else if (board.isFiftyMoveRule()) {
+                    JOptionPane.showMessageDialog(frame, "Fifty moves without a capture or pawn move! The game is a draw.");
+                    result = PgnGame.DRAW;
+                    disableBoard();
+                } else if (board.isInsufficientMaterial()) {
+                    JOptionPane.showMessageDialog(frame, "Neither side can checkmate! The game is a draw.");
+                    result = PgnGame.DRAW;
+                    disableBoard();
+                } else if (board.isInCheck(!whiteTurn)) {
+                    JOptionPane.showMessageDialog(frame, "Check!");
                 }
 
                 whiteTurn = !whiteTurn; // Switch turns
@@ -160,9 +190,21 @@ public class ChessGUI {
      * Updates the board display.
      */
     private void updateBoard() {
+        int checkedKing = board.isInCheck() ? board.getKingSquare(board.isWhiteToMove()) : -1; // King to highlight, if any
+        long hanging = board.getHangingPieces(board.isWhiteToMove()); // Pieces the player to move can lose for nothing
         for (int row = 0; row < ROWS; row++) {
             for (int col = 0; col < COLS; col++) {
-                Piece piece = board.getPiece(new Position(row, col)); // Get the piece at the current position
+                if (row * COLS + col == checkedKing) {
+                    squares[row][col].setBackground(Color.PINK); // Highlight the king in check
+                } else {
+                    squares[row][col].setBackground((row + col) % 2 == 0 ? Color.WHITE : Color.GRAY);
+                }
+                if ((hanging >>> (row * COLS + col) & 1L) != 0L) {
+                    squares[row][col].setBorder(BorderFactory.createLineBorder(Color.ORANGE, 2)); // Flag a hanging piece
+                } else {
+                    squares[row][col].setBorder(null);
+                }
+                Piece piece = board.getPiece(Position.of(row, col)); // Get the piece at the current position
                 if (piece != null) {
                     squares[row][col].setIcon(new ImageIcon("resources/images/" + piece.toString() + ".png")); // Set the icon for the piece
                 } else {
@@ -173,27 +215,35 @@ public class ChessGUI {
     }
 
     /**
-     * Records a move in the movement list.
-     *
-     * @param from The starting position of the piece.
-     * @param to   The ending position of the piece.
+     * Records the move just played in the movement list, in standard algebraic notation.
      */
-    private void recordMovement(Position from, Position to) {
-        String move = "Move from " + convertPosition(from) + " to " + convertPosition(to); // Create a move string
+    private void recordMovement() {
+        int played = board.getHistoryMove(board.getHistoryLength() - 1);
+        Board before = new Board(board); // A copy, so taking the move back leaves the game alone
+        before.unmakeMove();
+        String number = before.getFullmoveNumber() + (before.isWhiteToMove() ? ". " : "... ");
+        String move = number + San.format(before, played); // Create a move string such as "1. e4"
         movements.add(move); // Add the move to the movements list
         movementListModel.addElement(move); // Add the move to the movement list model
     }
 
     /**
-     * Converts a Position object to a chess notation string.
-     *
-     * @param position The position to convert.
-     * @return The chess notation string.
+     * Asks for a file and adds the game played so far to it in PGN.
      */
-    private String convertPosition(Position position) {
-        char column = (char) ('A' + position.getColumn()); // Convert column index to a letter
-        int rowNum = 8 - position.getRow(); // Convert row index to a number
-        return "" + column + rowNum; // Return the chess notation string
+    private void saveGame() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        PgnGame game = PgnGame.fromBoard(board);
+        game.setTag("White", player1Name);
+        game.setTag("Black", player2Name);
+        game.setResult(result);
+        try (PgnWriter writer = PgnWriter.append(chooser.getSelectedFile().toPath())) {
+            writer.write(game);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Could not save the game: " + e.getMessage());
+        }
     }
 
     /**
@@ -0,0 +1,294 @@
+package engine;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+import book.OpeningBook;
+import tablebase.Tablebase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * This class represents the computer player's search engine.
+ * It owns the transposition table, so results carry over from one search to the next.
+ * With more than one thread it runs a Lazy SMP search: helper threads search copies of
+ * the board at the same time as the main thread and share its transposition table, so
+ * the main thread finds many of its positions already searched.
+ */
+public class Engine {
+    private static final int PAWN_TABLE_ENTRIES = 1 << 16;
+
+    private final TranspositionTable table;
+    private PawnTable[] pawnTables = new PawnTable[0]; // One per search thread, kept from one search to the next
+    private volatile boolean stopped; // Set to end the running search
+    private volatile boolean prepared; // Set by prepare, so the next search keeps a stop that came before it
+    private int threads = 1; // Number of threads per search, including the main one
+    private long cutoffs; // Nodes of the last search that failed high, over all threads
+    private long firstMoveCutoffs; // Those that failed high on the first move searched
+    private OpeningBook book; // Consulted before each search, or null
+    private final Random bookRandom = new Random(); // Chooses among the book moves by weight
+    private Tablebase tablebase; // Probed at the root and during the search, or null
+    private Consumer<SearchResult> infoListener; // Told about each iteration the main thread completes, or null
+    private volatile Searcher[] running = new Searcher[0]; // The searchers of the latest search, for node counts
+
+    /**
+     * Constructs an Engine with a 16 megabyte transposition table.
+     */
+    public Engine() {
+        this(16);
+    }
+
+    /**
+     * Constructs an Engine.
+     *
+     * @param hashMegabytes The size of the transposition table in megabytes.
+     */
+    public Engine(int hashMegabytes) {
+        this.table = new TranspositionTable(hashMegabytes);
+    }
+
+    /**
+     * Searches for the best move of the side to move. The board is searched in place and
+     * is back in its original position when the method returns, so it must not be changed
+     * by another thread during the search. If the opening book has a move for the position,
+     * or the position is in the endgame tablebase, that move is returned at once instead.
+     *
+     * @param board  The position to search.
+     * @param limits The search budget.
+     * @return The best move found, with its score and principal variation.
+     */
+    public SearchResult search(Board board, SearchLimits limits) {
+        if (!prepared) {
+            stopped = false;
+        }
+        prepared = false;
+        long startTime = System.nanoTime();
+        if (book != null) {
+            int move = book.pickMove(board, bookRandom);
+            if (move != Move.NONE) {
+                // A book move is played without searching, so it has no score or depth
+                return new SearchResult(Collections.singletonList(Move.of(move)), 0, 0, 0,
+                        (System.nanoTime() - startTime) / 1_000_000L);
+            }
+        }
+        if (tablebase != null) {
+            int move = tablebase.bestMove(board, new MoveList());
+            if (move != Move.NONE) {
+                return new SearchResult(Collections.singletonList(Move.of(move)),
+                        Searcher.tablebaseScore(tablebase.probe(board), 0), 0, 0, (System.nanoTime() - startTime) / 1_000_000L);
+            }
+        }
+        table.newSearch();
+
+        if (pawnTables.length != threads) {
+            pawnTables = new PawnTable[threads];
+            for (int i = 0; i < threads; i++) {
+                pawnTables[i] = new PawnTable(PAWN_TABLE_ENTRIES);
+            }
+        }
+        Searcher[] searchers = new Searcher[threads];
+        Thread[] helpers = new Thread[threads - 1];
+        searchers[0] = new Searcher(this, 0, board, table, pawnTables[0], limits);
+        for (int i = 1; i < threads; i++) {
+            searchers[i] = new Searcher(this, i, new Board(board), table, pawnTables[i], limits);
+            helpers[i - 1] = new Thread(searchers[i], "search-helper-" + i);
+            helpers[i - 1].setDaemon(true);
+            helpers[i - 1].start();
+        }
+        running = searchers;
+        SearchResult main = searchers[0].iterate();
+        stop();
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        for (Searcher searcher : searchers) {
+            cutoffs += searcher.getCutoffs();
+            firstMoveCutoffs += searcher.getFirstMoveCutoffs();
+        }
+        if (threads == 1) {
+            return main;
+        }
+
+        // Prefer the line of a helper that completed a deeper iteration than the main thread
+        SearchResult best = main;
+        long[] threadNodes = new long[threads];
+        int[] threadDepths = new int[threads];
+        for (int i = 0; i < threads; i++) {
+            threadNodes[i] = searchers[i].getNodes();
+            threadDepths[i] = searchers[i].getCompletedDepth();
+            SearchResult result = i == 0 ? main : searchers[i].getResult();
+            if (result != null && result.getDepth() > best.getDepth() && result.getBestMove() != null) {
+                best = result;
+            }
+        }
+        return new SearchResult(best.getPrincipalVariation(), best.getScore(), best.getDepth(),
+                (System.nanoTime() - startTime) / 1_000_000L, threadNodes, threadDepths);
+    }
+
+    /**
+     * Sets the opening book to play from while it has a move for the position.
+     *
+     * @param book The book, or null to always search.
+     */
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Gets the opening book the engine plays from.
+     *
+     * @return The book, or null if there is none.
+     */
+    public OpeningBook getBook() {
+        return book;
+    }
+
+    /**
+     * Sets the endgame tablebase, which replaces the search in the positions it covers.
+     *
+     * @param tablebase The tablebase, or null to search every position.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Gets the endgame tablebase the engine plays from.
+     *
+     * @return The tablebase, or null if there is none.
+     */
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    /**
+     * Sets a listener told about the progress of each search. It is called on the search
+     * thread after every completed iteration, so it must return quickly.
+     *
+     * @param infoListener The listener, given the line, score and depth of the iteration
+     *                     and the nodes and time of the whole search so far, or null.
+     */
+    public void setInfoListener(Consumer<SearchResult> infoListener) {
+        this.infoListener = infoListener;
+    }
+
+    /**
+     * Gets the number of nodes the running or latest search has searched, over all threads.
+     * It may be called from any thread while the search runs.
+     *
+     * @return The node count.
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for (Searcher searcher : running) {
+            nodes += searcher.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Passes a completed iteration of the main search thread to the info listener.
+     *
+     * @param line      The principal variation.
+     * @param score     The score of the line.
+     * @param depth     The depth of the iteration.
+     * @param startTime The System.nanoTime() at which the search started.
+     */
+    void reportIteration(List<Move> line, int score, int depth, long startTime) {
+        if (infoListener != null) {
+            infoListener.accept(new SearchResult(line, score, depth, getNodes(), (System.nanoTime() - startTime) / 1_000_000L));
+        }
+    }
+
+    /**
+     * Sets the number of threads each search uses.
+     *
+     * @param threads The thread count, at least 1.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Gets the number of threads each search uses.
+     *
+     * @return The thread count.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Clears any earlier stop ahead of a search that another thread is about to start. A stop
+     * sent after this call, even before that search begins, then ends the search, where
+     * otherwise the search would clear it when it starts.
+     */
+    public void prepare() {
+        stopped = false;
+        prepared = true;
+    }
+
+    /**
+     * Asks the running search to finish as soon as possible with the best move found so far.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Checks if the running search was asked to stop.
+     *
+     * @return true if the search was stopped, false otherwise.
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Gets the share of cutoffs in the last search that came from the first move searched,
+     * which shows how well moves were ordered; well-ordered searches reach about 90%.
+     *
+     * @return The first-move cutoff rate between 0 and 1, or 0 if nothing failed high.
+     */
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Gets the number of nodes in the last search that failed high.
+     *
+     * @return The cutoff count over all threads.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Gets the pawn structure cache of one search thread, whose hit and miss counters
+     * show how often pawn evaluation was skipped.
+     *
+     * @param thread The thread index, 0 for the main thread.
+     * @return The pawn table, or null if no search has used that thread yet.
+     */
+    public PawnTable getPawnTable(int thread) {
+        return thread < pawnTables.length ? pawnTables[thread] : null;
+    }
+
+    /**
+     * Gets the transposition table shared by the engine's searches.
+     *
+     * @return The transposition table.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,91 @@
+package match;
+
+import board.Board;
+import board.Move;
+import book.OpeningBook;
+import engine.Engine;
+import engine.SearchLimits;
+import engine.SearchResult;
+import tablebase.Tablebase;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class represents an engine player in a headless match. It keeps a fixed pool of
+ * engines and each move borrows one for its search, so however many games are running,
+ * at most that many searches of this player are in flight and at most that many
+ * transposition tables are allocated.
+ */
+public class EngineMoveSource implements MoveSource {
+    private final String name;
+    private final SearchLimits limits;
+    private final BlockingQueue<Engine> engines; // Engines not searching at the moment
+
+    /**
+     * Constructs an EngineMoveSource.
+     *
+     * @param name          The name of the player.
+     * @param limits        The budget of each search.
+     * @param engines       The number of searches that can run at once.
+     * @param hashMegabytes The size of each engine's transposition table in megabytes.
+     */
+    public EngineMoveSource(String name, SearchLimits limits, int engines, int hashMegabytes) {
+        this.name = name;
+        this.limits = limits;
+        this.engines = new ArrayBlockingQueue<>(Math.max(1, engines));
+        for (int i = 0; i < Math.max(1, engines); i++) {
+            this.engines.add(new Engine(hashMegabytes));
+        }
+    }
+
+    /**
+     * Sets the opening book of every engine. It must be called before the match starts.
+     *
+     * @param book The book, or null to always search.
+     */
+    public void setBook(OpeningBook book) {
+        for (Engine engine : engines) {
+            engine.setBook(book);
+        }
+    }
+
+    /**
+     * Sets the endgame tablebase of every engine. It must be called before the match starts.
+     *
+     * @param tablebase The tablebase, or null to search every position.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        for (Engine engine : engines) {
+            engine.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * Searches the position with an engine from the pool, waiting for one to be free.
+     *
+     * @param board The position.
+     * @return The packed best move, or Move.NONE if there is no legal move.
+     * @throws InterruptedException if the thread is interrupted while waiting for an engine.
+     */
+    @Override
+    public int chooseMove(Board board) throws InterruptedException {
+        Engine engine = engines.take();
+        try {
+            SearchResult result = engine.search(board, limits);
+            return result.getBestMove() != null ? result.getBestMove().pack() : Move.NONE;
+        } finally {
+            engines.add(engine);
+        }
+    }
+
+    /**
+     * Gets the name of the player.
+     *
+     * @return The name.
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,119 @@
+package engine;
+
+import board.Bitboards;
+import board.Board;
+import board.PieceSquareTables;
+import pieces.Piece;
+
+/**
+ * This class scores board positions for the search.
+ * Scores are in centipawns from the point of view of the side to move.
+ *
+ * Material and piece-square values are read from the running totals the board keeps,
+ * and pawn structure from a PawnTable, so only mobility, king safety and the passed pawns
+ * that are free to advance are computed here, from the attacks of the pieces on the board.
+ * Each term has a middlegame and an endgame weight, and the two totals are blended by the
+ * game phase.
+ */
+public final class Evaluator {
+    // Mobility is counted from a typical number of moves, so an average piece scores nothing
+    private static final int[] MOBILITY_CENTER = {0, 4, 6, 7, 13, 0};
+    private static final int[] MOBILITY_MIDDLEGAME = {0, 4, 3, 2, 1, 0}; // Per move above the center
+    private static final int[] MOBILITY_ENDGAME = {0, 4, 3, 4, 2, 0};
+    private static final int[] KING_ATTACK_WEIGHTS = {0, 2, 2, 3, 5, 0}; // Per attacked square next to the enemy king
+    private static final int MAX_KING_DANGER = 500;
+    private static final int PAWN_SHIELD_BONUS = 12; // Per own pawn in front of the king, middlegame only
+    private static final int FREE_PASSER_BONUS = 15; // Per passed pawn whose next square is empty, endgame only
+
+    private Evaluator() {
+    }
+
+    /**
+     * Scores a position by material, piece placement, pawn structure, mobility and king safety.
+     *
+     * @param board The board to score.
+     * @param pawns The cache of pawn structure scores to read from and fill.
+     * @return The score for the side to move.
+     */
+    public static int evaluate(Board board, PawnTable pawns) {
+        int entry = pawns.probe(board);
+        int middlegame = board.getMiddlegameScore() + pawns.middlegame(entry);
+        int endgame = board.getEndgameScore() + pawns.endgame(entry);
+        long occupied = board.getOccupied();
+        long passed = pawns.passedPawns(entry);
+        // Pawns move towards lower squares for white, so shifting right by a row gives the square ahead
+        endgame += FREE_PASSER_BONUS * (Long.bitCount((passed & board.getPieces(true, Piece.PAWN)) >>> 8 & ~occupied)
+                - Long.bitCount((passed & board.getPieces(false, Piece.PAWN)) << 8 & ~occupied));
+        for (int side = 0; side < 2; side++) {
+            boolean isWhite = side == 0;
+            int sign = isWhite ? 1 : -1;
+            long own = board.getPieces(isWhite);
+            int enemyKing = board.getKingSquare(!isWhite);
+            long kingZone = enemyKing == Board.NO_SQUARE ? 0L : Bitboards.kingAttacks(enemyKing) | Bitboards.bit(enemyKing);
+            int attackers = 0;
+            int attackUnits = 0;
+            for (int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+                long pieces = board.getPieces(isWhite, type);
+                while (pieces != 0L) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    long attacks = attacks(type, square, occupied);
+                    int mobility = Long.bitCount(attacks & ~own) - MOBILITY_CENTER[type];
+                    middlegame += sign * MOBILITY_MIDDLEGAME[type] * mobility;
+                    endgame += sign * MOBILITY_ENDGAME[type] * mobility;
+                    long zoneAttacks = attacks & kingZone;
+                    if (zoneAttacks != 0L) {
+                        attackers++;
+                        attackUnits += KING_ATTACK_WEIGHTS[type] * Long.bitCount(zoneAttacks);
+                    }
+                }
+            }
+            // A lone attacker is rarely dangerous; beyond that the danger grows with the square of the pressure
+            if (attackers >= 2) {
+                middlegame += sign * Math.min(attackUnits * attackUnits, MAX_KING_DANGER);
+            }
+            middlegame += sign * PAWN_SHIELD_BONUS * Long.bitCount(pawnShield(isWhite, board.getKingSquare(isWhite))
+                    & board.getPieces(isWhite, Piece.PAWN));
+        }
+        int phase = Math.min(board.getPhase(), PieceSquareTables.MAX_PHASE);
+        int score = (middlegame * phase + endgame * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+        return board.isWhiteToMove() ? score : -score;
+    }
+
+    /**
+     * Gets the squares a knight, bishop, rook or queen attacks.
+     *
+     * @param type     The piece type.
+     * @param square   The square of the piece.
+     * @param occupied The occupied squares that block sliding pieces.
+     * @return The attacked squares.
+     */
+    private static long attacks(int type, int square, long occupied) {
+        switch (type) {
+            case Piece.KNIGHT:
+                return Bitboards.knightAttacks(square);
+            case Piece.BISHOP:
+                return Bitboards.bishopAttacks(square, occupied);
+            case Piece.ROOK:
+                return Bitboards.rookAttacks(square, occupied);
+            default:
+                return Bitboards.queenAttacks(square, occupied);
+        }
+    }
+
+    /**
+     * Gets the three squares directly in front of a king, where its own pawns shelter it.
+     *
+     * @param isWhite    The color of the king.
+     * @param kingSquare The square of the king, or Board.NO_SQUARE.
+     * @return The shelter squares.
+     */
+    private static long pawnShield(boolean isWhite, int kingSquare) {
+        if (kingSquare == Board.NO_SQUARE) {
+            return 0L;
+        }
+        long front = Bitboards.pawnAttacks(isWhite, kingSquare);
+        int ahead = kingSquare + (isWhite ? -8 : 8);
+        return ahead >= 0 && ahead < 64 ? front | Bitboards.bit(ahead) : front;
+    }
+}
@@ -1,6 +1,14 @@
 import board.Board;
+import book.OpeningBook;
+import engine.Engine;
+import engine.SearchLimits;
+import pgn.PgnGame;
+import pgn.PgnWriter;
 import pieces.Player;
+import tablebase.Tablebase;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 /**
@@ -11,6 +19,8 @@ public class Game {
     private Player white; // The white player
     private Player black; // The black player
     private String playerTurn; // String to track the current player's turn
+    private String result; // The PGN result of the game, PgnGame.UNFINISHED while it is played
+    private Tablebase tablebase; // Endgame tables the computer plays from, or null
 
     /**
      * Constructor to initialize the game.
@@ -20,6 +30,7 @@ public class Game {
         this.white = new Player(true, board); // Initialize the white player
         this.black = new Player(false, board); // Initialize the black player
         this.playerTurn = "white"; // White starts the game
+        this.result = PgnGame.UNFINISHED;
     }
 
     /**
@@ -35,10 +46,38 @@ public class Game {
         p1Name = scnr.nextLine();
         this.white.setName(p1Name);
 
-        System.out.println("What's Player 2's name?");
-        System.out.print("Player 2: ");
-        p2Name = scnr.nextLine();
-        this.black.setName(p2Name);
+        System.out.print("Should the computer play Player 2? (y/n): ");
+        if (scnr.nextLine().trim().equalsIgnoreCase("y")) {
+            SearchLimits limits = new SearchLimits();
+            limits.setMoveTime(2000); // Think for two seconds per move
+            Engine engine = new Engine();
+            System.out.print("Opening book file for the computer (leave empty for none): ");
+            String bookFile = scnr.nextLine().trim();
+            if (!bookFile.isEmpty()) {
+                try {
+                    engine.setBook(new OpeningBook(Paths.get(bookFile)));
+                } catch (IOException e) {
+                    System.out.println("Could not open the book, the computer will search every move: " + e.getMessage());
+                }
+            }
+            System.out.print("Endgame tablebase directory for the computer (leave empty for none): ");
+            String tablebaseDirectory = scnr.nextLine().trim();
+            if (!tablebaseDirectory.isEmpty()) {
+                try {
+                    this.tablebase = new Tablebase(Paths.get(tablebaseDirectory));
+                    engine.setTablebase(tablebase);
+                } catch (IOException e) {
+                    System.out.println("Could not open the tablebase, the computer will search endgames: " + e.getMessage());
+                }
+            }
+            this.black.setEngine(engine, limits);
+            this.black.setName("Computer");
+        } else {
+            System.out.println("What's Player 2's name?");
+            System.out.print("Player 2: ");
+            p2Name = scnr.nextLine();
+            this.black.setName(p2Name);
+        }
 
         System.out.println("Game started.");
         play(scnr); // Pass the Scanner to the play method
@@ -53,6 +92,28 @@ public class Game {
         System.out.println("Game over: " + result);
     }
 
+    /**
+     * Describes how the game ended.
+     *
+     * @param toMoveIsWhite Whether white is to move in the final position.
+     * @return The result message.
+     */
+    private String endReason(boolean toMoveIsWhite) {
+        if (board.isCheckmate(toMoveIsWhite)) {
+            return toMoveIsWhite ? "Black wins by checkmate" : "White wins by checkmate";
+        }
+        if (board.isStalemate(toMoveIsWhite)) {
+            return "Draw by stalemate";
+        }
+        if (board.isThreefoldRepetition()) {
+            return "Draw by threefold repetition";
+        }
+        if (board.isFiftyMoveRule()) {
+            return "Draw by the fifty-move rule";
+        }
+        return "Draw by insufficient material";
+    }
+
     /**
      * Handles the main game play loop, prompting players for moves and updating the board.
      */
@@ -72,20 +133,72 @@ public class Game {
                 black.makeMove(scnr);
             }
 
-            // Check for check or checkmate
-            if (board.isCheckmate(playerTurn.equals("white"))) {
-                end(playerTurn.equals("white") ? "Black wins by checkmate" : "White wins by checkmate");
+            // Check whether the game has ended, or the opponent is now in check
+            boolean opponentIsWhite = !playerTurn.equals("white");
+            result = PgnGame.outcome(board);
+            if (!result.equals(PgnGame.UNFINISHED)) {
+                end(endReason(opponentIsWhite));
                 gameOver = true;
-            } else if (board.isInCheck(playerTurn.equals("white"))) {
-                System.out.println((playerTurn.equals("white") ? "White" : "Black") + " is in check!");
+            } else if (board.isInCheck(opponentIsWhite)) {
+                System.out.println((opponentIsWhite ? "White" : "Black") + " is in check!");
+            }
+            if (!gameOver && tablebase != null) {
+                showTablebaseResult();
             }
 
             // Switch turns
             playerTurn = playerTurn.equals("white") ? "black" : "white";
         }
+
+        System.out.print("Save the game as PGN? Enter a file name, or leave it empty to skip: ");
+        String fileName = scnr.hasNextLine() ? scnr.nextLine().trim() : "";
+        if (!fileName.isEmpty()) {
+            try {
+                savePgn(fileName);
+                System.out.println("Game saved to " + fileName);
+            } catch (IOException e) {
+                System.out.println("Could not save the game: " + e.getMessage());
+            }
+        }
         scnr.close(); // Close the Scanner here when the game ends
     }
 
+    /**
+     * Prints how the game ends with best play if the position is in the endgame tablebase.
+     */
+    private void showTablebaseResult() {
+        int entry = tablebase.probe(board);
+        if (entry == Tablebase.NOT_FOUND) {
+            return;
+        }
+        String toMove = board.isWhiteToMove() ? "White" : "Black";
+        String other = board.isWhiteToMove() ? "Black" : "White";
+        int moves = Tablebase.movesToMate(entry);
+        if (Tablebase.result(entry) == Tablebase.WIN) {
+            System.out.println("Tablebase: " + toMove + " mates in " + moves + " with best play");
+        } else if (Tablebase.result(entry) == Tablebase.LOSS) {
+            System.out.println("Tablebase: " + other + " mates in " + moves + " with best play");
+        } else {
+            System.out.println("Tablebase: the position is a draw");
+        }
+    }
+
+    /**
+     * Adds the game played so far to a PGN file, creating the file if needed.
+     *
+     * @param fileName The name of the PGN file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void savePgn(String fileName) throws IOException {
+        PgnGame game = PgnGame.fromBoard(board);
+        game.setTag("White", white.getName());
+        game.setTag("Black", black.getName());
+        game.setResult(result);
+        try (PgnWriter writer = PgnWriter.append(Paths.get(fileName))) {
+            writer.write(game);
+        }
+    }
+
     // Main method to test the class
     public static void main(String[] args) {
         Game game = new Game(); // Create a new game instance
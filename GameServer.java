@@ -0,0 +1,478 @@
+package server;
+
+import board.Bitboards;
+import board.Board;
+import board.Move;
+import pgn.PgnGame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class hosts many games at once for clients connecting over TCP. A single thread
+ * runs a non-blocking selector over every connection and owns every board, so games need
+ * no locks, and a move is checked and played in microseconds, between two reads.
+ *
+ * The protocol is one command per line, answered by one line, in order:
+ * <pre>
+ * NEW [fen]              CREATED id
+ * MOVE id e2e4           MOVED id e2e4 status     (status is *, 1-0, 0-1 or 1/2-1/2)
+ * FEN id                 POSITION id fen
+ * SUBSCRIBE id           SUBSCRIBED id fen
+ * UNSUBSCRIBE id         UNSUBSCRIBED id
+ * CLOSE id               CLOSED id
+ * </pre>
+ * A command that cannot be carried out is answered with "ERROR reason". Subscribers of a
+ * game are also sent "UPDATE id move status" after each of its moves and "CLOSED id" when
+ * it is closed. Output is collected while a batch of commands is handled and written
+ * once per connection at the end, and a connection that stops reading is dropped once
+ * too much output is waiting for it.
+ */
+public class GameServer implements Runnable, Closeable {
+    public static final int DEFAULT_PORT = 7878;
+
+    private static final int MAX_LINE = 4096; // Longest command accepted, in bytes
+    private static final int MAX_PENDING_OUTPUT = 1 << 20; // Output waiting for a connection before it is dropped
+    private static final Set<String> GAME_COMMANDS = Set.of("MOVE", "FEN", "SUBSCRIBE", "UNSUBSCRIBE", "CLOSE");
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Map<Long, HostedGame> games = new HashMap<>();
+    private final List<Connection> pending = new ArrayList<>(); // Connections with output to write
+    private long nextId = 1;
+    private volatile int gameCount; // For other threads to read
+    private volatile boolean running = true;
+
+    /**
+     * Opens a server on the loopback interface.
+     *
+     * @param port The port, or 0 to pick a free one.
+     * @throws IOException if the port cannot be bound.
+     */
+    public GameServer(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Opens a server.
+     *
+     * @param address The address to listen on.
+     * @throws IOException if the address cannot be bound.
+     */
+    public GameServer(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the number of games open.
+     *
+     * @return The game count.
+     */
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Serves connections until the server is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(connection);
+                            }
+                            if (key.isValid() && key.isWritable() && !connection.queued) {
+                                connection.queued = true;
+                                pending.add(connection);
+                            }
+                        } catch (RuntimeException e) {
+                            // A fault while serving one connection must not stop the games of the others
+                            System.err.println("Game server dropped a connection: " + e);
+                            disconnect(connection);
+                        }
+                    }
+                }
+                for (Connection connection : pending) {
+                    flush(connection);
+                }
+                pending.clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("Game server stopped: " + e.getMessage());
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Accepts a waiting connection.
+     *
+     * @throws IOException if the connection cannot be set up.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true); // Replies are single short lines
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    /**
+     * Reads what a connection sent and handles each complete line.
+     *
+     * @param connection The connection.
+     */
+    private void read(Connection connection) {
+        ByteBuffer input = connection.input;
+        int count;
+        try {
+            count = connection.channel.read(input);
+        } catch (IOException e) {
+            count = -1;
+        }
+        if (count < 0) {
+            disconnect(connection);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < input.position(); i++) {
+            if (input.get(i) == '\n') {
+                int end = i > start && input.get(i - 1) == '\r' ? i - 1 : i;
+                handle(connection, new String(input.array(), start, end - start, StandardCharsets.US_ASCII));
+                start = i + 1;
+                if (!connection.channel.isOpen()) {
+                    return;
+                }
+            }
+        }
+        if (start == 0 && !input.hasRemaining()) {
+            send(connection, "ERROR line too long");
+            flush(connection);
+            disconnect(connection);
+            return;
+        }
+        // Keep the start of an unfinished line for the next read
+        input.limit(input.position()).position(start);
+        input.compact();
+    }
+
+    /**
+     * Carries out one command.
+     *
+     * @param connection The connection that sent it.
+     * @param line       The command.
+     */
+    private void handle(Connection connection, String line) {
+        String[] words = line.trim().split(" +", 3);
+        String command = words[0].toUpperCase();
+        if (command.equals("NEW")) {
+            Board board;
+            try {
+                board = words.length > 1 ? Board.fromFen(line.trim().substring(3).trim()) : new Board();
+            } catch (IllegalArgumentException e) {
+                send(connection, "ERROR invalid FEN: " + e.getMessage());
+                return;
+            }
+            long id = nextId++;
+            HostedGame game = new HostedGame(board);
+            game.status = PgnGame.outcome(board);
+            games.put(id, game);
+            gameCount = games.size();
+            send(connection, "CREATED " + id);
+            return;
+        }
+        if (command.isEmpty()) {
+            return;
+        }
+        if (words.length < 2 || !GAME_COMMANDS.contains(command)) {
+            send(connection, "ERROR unknown command: " + line);
+            return;
+        }
+        long id;
+        try {
+            id = Long.parseLong(words[1]);
+        } catch (NumberFormatException e) {
+            send(connection, "ERROR invalid game id: " + words[1]);
+            return;
+        }
+        HostedGame game = games.get(id);
+        if (game == null) {
+            send(connection, "ERROR no game " + id);
+            return;
+        }
+        switch (command) {
+            case "MOVE":
+                move(connection, id, game, words.length > 2 ? words[2].trim() : "");
+                break;
+            case "FEN":
+                send(connection, "POSITION " + id + " " + game.board.toFen());
+                break;
+            case "SUBSCRIBE":
+                if (connection.subscriptions.add(id)) {
+                    game.subscribers.add(connection);
+                }
+                send(connection, "SUBSCRIBED " + id + " " + game.board.toFen());
+                break;
+            case "UNSUBSCRIBE":
+                if (connection.subscriptions.remove(id)) {
+                    game.subscribers.remove(connection);
+                }
+                send(connection, "UNSUBSCRIBED " + id);
+                break;
+            case "CLOSE":
+                games.remove(id);
+                gameCount = games.size();
+                for (Connection subscriber : game.subscribers) {
+                    subscriber.subscriptions.remove(id);
+                    if (subscriber != connection) {
+                        send(subscriber, "CLOSED " + id);
+                    }
+                }
+                send(connection, "CLOSED " + id);
+                break;
+        }
+    }
+
+    /**
+     * Plays a move in a game and tells its subscribers.
+     *
+     * @param connection The connection that sent the move.
+     * @param id         The game id.
+     * @param game       The game.
+     * @param text       The move in coordinate notation.
+     */
+    private void move(Connection connection, long id, HostedGame game, String text) {
+        if (!game.status.equals(PgnGame.UNFINISHED)) {
+            send(connection, "ERROR game " + id + " is over: " + game.status);
+            return;
+        }
+        Move move = Move.parse(text);
+        Board board = game.board;
+        // movePiece checks the move for the piece on its square, so the piece must also be the mover's
+        if (move == null || (board.getPieces(board.isWhiteToMove()) & Bitboards.bit(move.getFromSquare())) == 0L
+                || !board.movePiece(move)) {
+            send(connection, "ERROR illegal move in game " + id + ": " + text);
+            return;
+        }
+        game.status = PgnGame.outcome(board);
+        send(connection, "MOVED " + id + " " + move + " " + game.status);
+        if (!game.subscribers.isEmpty()) {
+            String update = "UPDATE " + id + " " + move + " " + game.status;
+            for (Connection subscriber : game.subscribers) {
+                send(subscriber, update);
+            }
+        }
+    }
+
+    /**
+     * Queues a line for a connection, to be written at the end of the current batch.
+     *
+     * @param connection The connection.
+     * @param line       The line, without its newline.
+     */
+    private void send(Connection connection, String line) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        if (connection.overflowed) {
+            return;
+        }
+        ByteBuffer output = connection.output;
+        if (output.remaining() < line.length() + 1) {
+            if (output.position() + line.length() + 1 > MAX_PENDING_OUTPUT) {
+                // It is not reading what it is sent. It is dropped when the batch is flushed, since
+                // the caller may be going through a list of subscribers that disconnecting changes.
+                connection.overflowed = true;
+                if (!connection.queued) {
+                    connection.queued = true;
+                    pending.add(connection);
+                }
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + line.length() + 1));
+            output.flip();
+            larger.put(output);
+            connection.output = output = larger;
+        }
+        for (int i = 0; i < line.length(); i++) {
+            output.put((byte) line.charAt(i));
+        }
+        output.put((byte) '\n');
+        if (!connection.queued) {
+            connection.queued = true;
+            pending.add(connection);
+        }
+    }
+
+    /**
+     * Writes as much of a connection's queued output as the socket takes, and asks to be
+     * told when it can take the rest. A connection whose output overflowed is closed instead.
+     *
+     * @param connection The connection.
+     */
+    private void flush(Connection connection) {
+        connection.queued = false;
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        if (connection.overflowed) {
+            disconnect(connection);
+            return;
+        }
+        ByteBuffer output = connection.output;
+        output.flip();
+        try {
+            connection.channel.write(output);
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+        output.compact();
+        int interest = output.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (connection.key.interestOps() != interest) {
+            connection.key.interestOps(interest);
+        }
+    }
+
+    /**
+     * Closes a connection and ends its subscriptions.
+     *
+     * @param connection The connection.
+     */
+    private void disconnect(Connection connection) {
+        for (long id : connection.subscriptions) {
+            HostedGame game = games.get(id);
+            if (game != null) {
+                game.subscribers.remove(connection);
+            }
+        }
+        connection.subscriptions.clear();
+        connection.key.cancel();
+        closeQuietly(connection.channel);
+    }
+
+    /**
+     * Closes a channel or selector, ignoring errors.
+     *
+     * @param closeable The object to close.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing more can be done with it
+        }
+    }
+
+    /**
+     * This class holds a game hosted by the server.
+     */
+    private static class HostedGame {
+        private final Board board;
+        private final List<Connection> subscribers = new ArrayList<>(1);
+        private String status; // The PGN result, or PgnGame.UNFINISHED while the game goes on
+
+        /**
+         * Constructs a HostedGame.
+         *
+         * @param board The position the game starts from.
+         */
+        HostedGame(Board board) {
+            this.board = board;
+        }
+    }
+
+    /**
+     * This class holds the state of one client connection.
+     */
+    private static class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE); // Bytes of lines not handled yet
+        private ByteBuffer output = ByteBuffer.allocate(1024); // Bytes not written yet, in write mode
+        private final Set<Long> subscriptions = new HashSet<>(); // Ids of the games it watches
+        private SelectionKey key;
+        private boolean queued; // Whether it is in the list of connections to flush
+        private boolean overflowed; // Set when it has more than MAX_PENDING_OUTPUT queued, to be closed at the flush
+
+        /**
+         * Constructs a Connection.
+         *
+         * @param channel The socket.
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Runs a server until the process is stopped.
+     *
+     * @param args Optionally the port, DEFAULT_PORT if none is given.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        GameServer server = new GameServer(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+        System.out.println("Game server listening on localhost:" + server.getPort());
+        server.run();
+    }
+}
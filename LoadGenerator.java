@@ -0,0 +1,338 @@
+package server;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class puts a GameServer under load and measures how long each move takes to be
+ * answered. Every connection opens its share of the games, then plays one move in each
+ * game in turn until time runs out, timing each move from sending it to reading the reply.
+ * A further connection subscribes to some of the games and counts the updates pushed to it.
+ *
+ * The games follow random legal lines prepared before the run, so the client needs no
+ * board per game; a game that reaches the end of its line is closed and a new one opened.
+ */
+public class LoadGenerator {
+    private static final int SCRIPTS = 64; // Random lines the games follow
+    private static final int SCRIPT_PLIES = 120; // Longest line
+    private static final int BUCKETS = 100_000; // Latency histogram in microseconds; the last bucket holds the rest
+
+    private final String host;
+    private final int port;
+    private final List<String[]> scripts = new ArrayList<>();
+    private final long[] histogram = new long[BUCKETS];
+    private final AtomicLong updates = new AtomicLong(); // Lines pushed to the watching connection
+
+    /**
+     * Constructs a LoadGenerator and prepares the lines its games follow.
+     *
+     * @param host The host of the server.
+     * @param port The port of the server.
+     */
+    public LoadGenerator(String host, int port) {
+        this.host = host;
+        this.port = port;
+        Random random = new Random(1);
+        MoveList moves = new MoveList();
+        for (int i = 0; i < SCRIPTS; i++) {
+            Board board = new Board();
+            List<String> line = new ArrayList<>();
+            while (line.size() < SCRIPT_PLIES && !board.isDraw()) {
+                board.generateLegalMoves(board.isWhiteToMove(), moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                int move = moves.get(random.nextInt(moves.size()));
+                line.add(Move.of(move).toString());
+                board.makeMove(move);
+            }
+            scripts.add(line.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Runs the load and prints the move rate and the latency percentiles.
+     *
+     * @param connections The number of connections playing moves, each on its own thread.
+     * @param games       The number of games open at once, spread over the connections.
+     * @param watched     The number of games the watching connection subscribes to.
+     * @param seconds     How long to play moves after the games are open.
+     * @throws IOException          if the server cannot be reached.
+     * @throws InterruptedException if the thread is interrupted while waiting for the connections.
+     */
+    public void run(int connections, int games, int watched, int seconds) throws IOException, InterruptedException {
+        CountDownLatch opened = new CountDownLatch(connections);
+        long[] deadline = new long[1];
+        long[] moveCounts = new long[connections];
+        long[][] histograms = new long[connections][];
+        Thread[] threads = new Thread[connections];
+        IOException[] failure = new IOException[1];
+        for (int c = 0; c < connections; c++) {
+            int index = c;
+            int share = games / connections + (c < games % connections ? 1 : 0);
+            threads[c] = new Thread(() -> {
+                try {
+                    histograms[index] = new long[BUCKETS];
+                    moveCounts[index] = play(share, index, opened, deadline, histograms[index]);
+                } catch (IOException | InterruptedException e) {
+                    synchronized (failure) {
+                        failure[0] = e instanceof IOException ? (IOException) e : new IOException(e);
+                    }
+                    opened.countDown();
+                }
+            }, "load-" + c);
+            threads[c].start();
+        }
+        long openStart = System.nanoTime();
+        opened.await();
+        System.out.printf("Opened %d games on %d connections in %d ms%n", games, connections,
+                (System.nanoTime() - openStart) / 1_000_000L);
+
+        Socket watcher = watched > 0 ? watch(watched) : null;
+        long start = System.nanoTime();
+        synchronized (deadline) {
+            deadline[0] = start + seconds * 1_000_000_000L;
+            deadline.notifyAll();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        long total = 0;
+        for (int c = 0; c < connections; c++) {
+            total += moveCounts[c];
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] += histograms[c][i];
+            }
+        }
+        System.out.printf("Moves: %d in %.1f s, %.0f moves/s%n", total, elapsed / 1e9, total * 1e9 / elapsed);
+        System.out.printf("Latency: p50 %.3f ms  p90 %.3f ms  p99 %.3f ms  p99.9 %.3f ms  max %s%n",
+                percentile(total, 0.5), percentile(total, 0.9), percentile(total, 0.99), percentile(total, 0.999),
+                maxLatency());
+        System.out.println("Updates pushed to the watcher: " + updates.get());
+    }
+
+    /**
+     * Plays the games of one connection.
+     *
+     * @param games     The number of games to keep open.
+     * @param offset    Spreads the connections' games over the lines.
+     * @param opened    Counted down once the games are open.
+     * @param deadline  Holds the time to stop at, set once every connection has opened its games.
+     * @param histogram The latency histogram to fill.
+     * @return The number of moves played.
+     * @throws IOException          if the connection fails or the server rejects a move.
+     * @throws InterruptedException if the thread is interrupted while waiting to start.
+     */
+    private long play(int games, int offset, CountDownLatch opened, long[] deadline, long[] histogram)
+            throws IOException, InterruptedException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+            long[] ids = new long[games];
+            int[] scriptOf = new int[games];
+            int[] plies = new int[games];
+            // Open the games with the commands sent in one batch
+            for (int g = 0; g < games; g++) {
+                out.write("NEW\n");
+            }
+            out.flush();
+            for (int g = 0; g < games; g++) {
+                ids[g] = Long.parseLong(expect(in, "CREATED ").substring(8));
+                scriptOf[g] = (offset + g) % SCRIPTS;
+            }
+            opened.countDown();
+            long end;
+            synchronized (deadline) {
+                while (deadline[0] == 0) {
+                    deadline.wait();
+                }
+                end = deadline[0];
+            }
+
+            long moves = 0;
+            while (System.nanoTime() < end) {
+                for (int g = 0; g < games && System.nanoTime() < end; g++) {
+                    String[] script = scripts.get(scriptOf[g]);
+                    if (plies[g] == script.length) {
+                        out.write("CLOSE " + ids[g] + "\nNEW\n");
+                        out.flush();
+                        expect(in, "CLOSED ");
+                        ids[g] = Long.parseLong(expect(in, "CREATED ").substring(8));
+                        scriptOf[g] = (scriptOf[g] + 1) % SCRIPTS;
+                        plies[g] = 0;
+                        script = scripts.get(scriptOf[g]);
+                    }
+                    long sent = System.nanoTime();
+                    out.write("MOVE " + ids[g] + " " + script[plies[g]] + "\n");
+                    out.flush();
+                    expect(in, "MOVED ");
+                    int micros = (int) Math.min(BUCKETS - 1, (System.nanoTime() - sent) / 1000);
+                    histogram[micros]++;
+                    plies[g]++;
+                    moves++;
+                }
+            }
+            return moves;
+        }
+    }
+
+    /**
+     * Opens the watching connection, subscribes it to the first games, and counts what it
+     * is sent on a thread of its own.
+     *
+     * @param games The number of games to subscribe to.
+     * @return The socket, to close when the run ends.
+     * @throws IOException if the server cannot be reached.
+     */
+    private Socket watch(int games) throws IOException {
+        Socket socket = new Socket(host, port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+        // Game ids are handed out from 1 in order, so the first ones are open
+        for (int id = 1; id <= games; id++) {
+            out.write("SUBSCRIBE " + id + "\n");
+        }
+        out.flush();
+        Thread reader = new Thread(() -> {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("UPDATE ")) {
+                        updates.incrementAndGet();
+                    }
+                }
+            } catch (IOException e) {
+                // The socket was closed at the end of the run
+            }
+        }, "load-watcher");
+        reader.setDaemon(true);
+        reader.start();
+        return socket;
+    }
+
+    /**
+     * Reads the next line and checks that it is the expected reply.
+     *
+     * @param in     The input of the connection.
+     * @param prefix The start of the expected reply.
+     * @return The line.
+     * @throws IOException if the connection fails or the reply is anything else.
+     */
+    private static String expect(BufferedReader in, String prefix) throws IOException {
+        String line = in.readLine();
+        if (line == null || !line.startsWith(prefix)) {
+            throw new IOException("Expected " + prefix.trim() + " but the server sent: " + line);
+        }
+        return line;
+    }
+
+    /**
+     * Finds a latency percentile in the histogram.
+     *
+     * @param total    The number of samples.
+     * @param fraction The percentile as a fraction, for example 0.99.
+     * @return The latency in milliseconds.
+     */
+    private double percentile(long total, double fraction) {
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return i / 1000.0;
+            }
+        }
+        return BUCKETS / 1000.0;
+    }
+
+    /**
+     * Finds the highest latency in the histogram.
+     *
+     * @return The latency in milliseconds, with a "+" when it was beyond the histogram.
+     */
+    private String maxLatency() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (histogram[i] > 0) {
+                return String.format("%.3f ms", i / 1000.0) + (i == BUCKETS - 1 ? "+" : "");
+            }
+        }
+        return "-";
+    }
+
+    /**
+     * Runs a load test against a server, starting one in this process unless a port is given.
+     *
+     * @param args Optionally --port n, --connections n, --games n, --watched n and --seconds n.
+     * @throws Exception if the server cannot be started or reached.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = 0;
+        int connections = 8;
+        int games = 20_000;
+        int watched = 100;
+        int seconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--watched":
+                    watched = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.out.println("Usage: java server.LoadGenerator [--port n] [--connections n] [--games n]"
+                            + " [--watched n] [--seconds n]");
+                    return;
+            }
+        }
+        GameServer server = null;
+        if (port == 0) {
+            server = new GameServer(0);
+            port = server.getPort();
+            Thread thread = new Thread(server, "game-server");
+            thread.setDaemon(true);
+            thread.start();
+            System.out.println("Started a game server on localhost:" + port);
+        }
+        try {
+            new LoadGenerator(InetAddress.getLoopbackAddress().getHostAddress(), port).run(connections, games, watched, seconds);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
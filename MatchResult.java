@@ -0,0 +1,151 @@
+package match;
+
+/**
+ * This class holds the running score of a match between two players, counted from the
+ * first player's side, and the Elo difference it implies. Games finish on many threads
+ * at once, so every method is synchronized.
+ */
+public class MatchResult {
+    private static final double Z_95 = 1.959964; // Standard normal quantile of a 95% two-sided interval
+
+    private int wins;
+    private int draws;
+    private int losses;
+    private final long startTime = System.nanoTime();
+    private long endTime; // 0 while the match is running
+
+    /**
+     * Counts one finished game.
+     *
+     * @param score 1 for a win of the first player, 0.5 for a draw, 0 for a loss.
+     * @return The number of finished games, including this one.
+     */
+    public synchronized int add(double score) {
+        if (score > 0.5) {
+            wins++;
+        } else if (score < 0.5) {
+            losses++;
+        } else {
+            draws++;
+        }
+        return wins + draws + losses;
+    }
+
+    /**
+     * Stops the clock used for the game rate.
+     */
+    synchronized void finish() {
+        endTime = System.nanoTime();
+    }
+
+    /**
+     * Gets the first player's wins.
+     *
+     * @return The number of wins.
+     */
+    public synchronized int getWins() {
+        return wins;
+    }
+
+    /**
+     * Gets the number of drawn games.
+     *
+     * @return The number of draws.
+     */
+    public synchronized int getDraws() {
+        return draws;
+    }
+
+    /**
+     * Gets the first player's losses.
+     *
+     * @return The number of losses.
+     */
+    public synchronized int getLosses() {
+        return losses;
+    }
+
+    /**
+     * Gets the number of finished games.
+     *
+     * @return The game count.
+     */
+    public synchronized int getGames() {
+        return wins + draws + losses;
+    }
+
+    /**
+     * Gets the first player's share of the points.
+     *
+     * @return The score between 0 and 1, or 0.5 before any game has finished.
+     */
+    public synchronized double getScore() {
+        int games = getGames();
+        return games == 0 ? 0.5 : (wins + 0.5 * draws) / games;
+    }
+
+    /**
+     * Gets the Elo difference between the players that the score implies.
+     *
+     * @return The first player's rating minus the second's; infinite if one side scored every point.
+     */
+    public synchronized double getEloDifference() {
+        return elo(getScore());
+    }
+
+    /**
+     * Gets the half-width of the 95% confidence interval of the Elo difference, from the
+     * spread of the individual game results.
+     *
+     * @return The margin in Elo, or infinity when there are too few games to tell or one
+     *         player scored every point.
+     */
+    public synchronized double getEloMargin() {
+        int games = getGames();
+        if (games < 2 || wins == games || losses == games) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double score = getScore();
+        double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+                + losses * Math.pow(score, 2)) / games;
+        double deviation = Math.sqrt(variance / games);
+        return (elo(score + Z_95 * deviation) - elo(score - Z_95 * deviation)) / 2;
+    }
+
+    /**
+     * Gets the number of games finished per second since the match started.
+     *
+     * @return The game rate.
+     */
+    public synchronized double getGamesPerSecond() {
+        long end = endTime != 0 ? endTime : System.nanoTime();
+        return getGames() * 1e9 / Math.max(1, end - startTime);
+    }
+
+    /**
+     * Formats the wins, draws and losses, the score, the Elo difference with its margin and the game rate.
+     *
+     * @return The summary.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("W %d D %d L %d  score %.1f%%  Elo %+.1f +/- %.1f  (%.1f games/s)", wins, draws, losses,
+                getScore() * 100, getEloDifference(), getEloMargin(), getGamesPerSecond());
+    }
+
+    /**
+     * Converts a score to an Elo difference with the logistic rating curve.
+     *
+     * @param score The expected score between 0 and 1.
+     * @return The Elo difference.
+     */
+    private static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
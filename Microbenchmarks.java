@@ -0,0 +1,271 @@
+package bench;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+import pieces.Piece;
+import pieces.Position;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * This class benchmarks the hot paths of Board, Piece and Position.
+ * Each benchmark is warmed up, then timed over a fixed window, and reports operations
+ * per second together with the bytes allocated per operation, read from the JVM's
+ * per-thread allocation counter. Every operation runs over a corpus of middlegame and
+ * endgame positions so the numbers are not tuned to a single board.
+ * Run it with "java bench.Microbenchmarks [benchmark name filter]".
+ */
+public class Microbenchmarks {
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 2000;
+    private static final int CORPUS_SEED = 20240601;
+
+    private static volatile long sink; // Keeps the JIT from removing benchmark results
+
+    /**
+     * Runs every benchmark whose name contains the filter.
+     *
+     * @param args An optional name filter.
+     */
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        List<Board> middlegames = corpus(24, 40, false);
+        List<Board> endgames = corpus(24, 160, true);
+        List<Board> all = new ArrayList<>(middlegames);
+        all.addAll(endgames);
+
+        System.out.printf("%-34s %14s %12s%n", "Benchmark", "ops/s", "B/op");
+        Position[][] firstMoves = new Position[all.size()][];
+        for (int i = 0; i < all.size(); i++) {
+            Move move = all.get(i).generateLegalMoves(all.get(i).isWhiteToMove()).get(0);
+            firstMoves[i] = new Position[]{move.getFrom(), move.getTo()};
+        }
+        run(filter, "Board.movePiece", () -> {
+            long n = 0;
+            for (int i = 0; i < all.size(); i++) {
+                Board board = all.get(i);
+                if (board.movePiece(firstMoves[i][0], firstMoves[i][1])) {
+                    board.unmakeMove();
+                    n++;
+                }
+            }
+            return n;
+        }, all.size());
+        MoveList moveList = new MoveList();
+        run(filter, "Board.generateLegalMoves", () -> {
+            long n = 0;
+            for (Board board : all) {
+                board.generateLegalMoves(board.isWhiteToMove(), moveList);
+                n += moveList.size();
+            }
+            return n;
+        }, all.size());
+        run(filter, "Board.isInCheck", () -> {
+            long n = 0;
+            for (Board board : all) {
+                n += board.isInCheck(board.isWhiteToMove()) ? 1 : 0;
+            }
+            return n;
+        }, all.size());
+        run(filter, "Board.isCheckmate", () -> {
+            long n = 0;
+            for (Board board : all) {
+                n += board.isCheckmate(board.isWhiteToMove()) ? 1 : 0;
+            }
+            return n;
+        }, all.size());
+        String[] fens = new String[all.size()];
+        ByteBuffer encoded = ByteBuffer.allocate(all.size() * Board.ENCODED_SIZE);
+        for (int i = 0; i < all.size(); i++) {
+            fens[i] = all.get(i).toFen();
+            all.get(i).encode(encoded);
+        }
+        Board loader = new Board();
+        run(filter, "Board.setFen", () -> {
+            long n = 0;
+            for (String fen : fens) {
+                loader.setFen(fen);
+                n += loader.getHalfmoveClock();
+            }
+            return n;
+        }, fens.length);
+        run(filter, "Board.decode", () -> {
+            long n = 0;
+            encoded.clear();
+            for (int i = 0; i < fens.length; i++) {
+                loader.decode(encoded);
+                n += loader.getHalfmoveClock();
+            }
+            return n;
+        }, fens.length);
+        String[] names = {"Pawn", "Knight", "Bishop", "Rook", "Queen", "King"};
+        Piece[][][] arrays = pieceArrays(all);
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            int pieceType = type;
+            int operations = countPieces(arrays, pieceType) * 64;
+            run(filter, names[type] + ".validateMove", () -> validateAll(arrays, pieceType), Math.max(1, operations));
+        }
+        String[] squares = new String[64];
+        for (int i = 0; i < 64; i++) {
+            squares[i] = "" + (char) ('A' + (i & 7)) + (8 - (i >>> 3));
+        }
+        run(filter, "new Position(String)", () -> {
+            long n = 0;
+            for (String square : squares) {
+                n += new Position(square).getRow();
+            }
+            return n;
+        }, squares.length);
+    }
+
+    /**
+     * Warms up and measures one benchmark, then prints its throughput and allocation rate.
+     *
+     * @param filter     The name filter; benchmarks not matching it are skipped.
+     * @param name       The benchmark name.
+     * @param batch      One batch of operations, returning a value to keep alive.
+     * @param operations The number of operations in one batch.
+     */
+    private static void run(String filter, String name, LongSupplier batch, int operations) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        long end = System.currentTimeMillis() + WARMUP_MILLIS;
+        while (System.currentTimeMillis() < end) {
+            sink += batch.getAsLong();
+        }
+        long batches = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        end = start + MEASURE_MILLIS * 1_000_000L;
+        long now;
+        do {
+            sink += batch.getAsLong();
+            batches++;
+            now = System.nanoTime();
+        } while (now < end);
+        long allocated = allocatedBytes() - allocatedBefore;
+        double seconds = (now - start) / 1e9;
+        long totalOperations = batches * operations;
+        System.out.printf("%-34s %14.0f %12.1f%n", name, totalOperations / seconds, (double) allocated / totalOperations);
+    }
+
+    /**
+     * Gets the number of bytes the current thread has allocated.
+     *
+     * @return The allocated bytes, or 0 if the JVM does not track them.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Builds positions by playing seeded random legal games from the starting position.
+     * Endgame positions prefer captures so that most of the material comes off the board.
+     *
+     * @param count          The number of positions.
+     * @param plies          The number of moves to play in each game.
+     * @param preferCaptures Whether to play a capture whenever one is available.
+     * @return The positions.
+     */
+    private static List<Board> corpus(int count, int plies, boolean preferCaptures) {
+        Random random = new Random(CORPUS_SEED + plies);
+        List<Board> positions = new ArrayList<>();
+        while (positions.size() < count) {
+            Board board = new Board();
+            for (int ply = 0; ply < plies; ply++) {
+                List<Move> moves = board.generateLegalMoves(board.isWhiteToMove());
+                if (moves.isEmpty()) {
+                    break;
+                }
+                Move choice = moves.get(random.nextInt(moves.size()));
+                if (preferCaptures) {
+                    for (Move move : moves) {
+                        if (board.getPiece(move.getTo()) != null) {
+                            choice = move;
+                            break;
+                        }
+                    }
+                }
+                board.makeMove(choice);
+            }
+            if (!board.generateLegalMoves(board.isWhiteToMove()).isEmpty()) {
+                positions.add(board);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Copies the pieces of each board into the array form that validateMove takes.
+     *
+     * @param boards The boards.
+     * @return One 8x8 array per board.
+     */
+    private static Piece[][][] pieceArrays(List<Board> boards) {
+        Piece[][][] arrays = new Piece[boards.size()][8][8];
+        for (int i = 0; i < boards.size(); i++) {
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    arrays[i][row][col] = boards.get(i).getPiece(new Position(row, col));
+                }
+            }
+        }
+        return arrays;
+    }
+
+    /**
+     * Counts the pieces of one type in the arrays.
+     *
+     * @param arrays The piece arrays of the corpus.
+     * @param type   The piece type.
+     * @return The number of pieces of that type.
+     */
+    private static int countPieces(Piece[][][] arrays, int type) {
+        int n = 0;
+        for (Piece[][] array : arrays) {
+            for (Piece[] row : array) {
+                for (Piece piece : row) {
+                    if (piece != null && piece.getType() == type) {
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Calls validateMove for every piece of one type towards every square.
+     *
+     * @param arrays The piece arrays of the corpus.
+     * @param type   The piece type.
+     * @return The number of moves found valid, to keep the calls alive.
+     */
+    private static long validateAll(Piece[][][] arrays, int type) {
+        long n = 0;
+        for (Piece[][] array : arrays) {
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    Piece piece = array[row][col];
+                    if (piece != null && piece.getType() == type) {
+                        for (int target = 0; target < 64; target++) {
+                            n += piece.validateMove(array, row, col, target >>> 3, target & 7) ? 1 : 0;
+                        }
+                    }
+                }
+            }
+        }
+        return n;
+    }
+}
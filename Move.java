@@ -0,0 +1,285 @@
+package board;
+
+import pieces.Piece;
+import pieces.Position;
+
+/**
+ * This class represents a single move produced by the board's move generator.
+ * Castling is written as the king's two-square move, and en passant as the pawn's
+ * diagonal move onto the empty square behind the captured pawn.
+ *
+ * The board's fast paths do not use Move objects but moves encoded in an int, built and
+ * read with the static methods of this class. The layout is: from square (bits 0-5),
+ * to square (6-11), promotion type (12-14, 0 for none), bit 15 unused, moving piece type
+ * (16-18), captured piece type + 1 (19-21, 0 for none) and a flag (22-23). The low 16 bits
+ * are the same as pack(), and the encoded value 0 never names a real move.
+ */
+public final class Move {
+    public static final int NO_PROMOTION = -1;
+    public static final int NONE = 0; // Encoded "no move"
+
+    public static final int FLAG_NORMAL = 0;
+    public static final int FLAG_DOUBLE_PUSH = 1;
+    public static final int FLAG_EN_PASSANT = 2;
+    public static final int FLAG_CASTLING = 3;
+
+    private final int from; // The starting square index
+    private final int to; // The ending square index
+    private final int promotion; // The piece type a pawn promotes to, or NO_PROMOTION
+
+    /**
+     * Constructs a Move.
+     *
+     * @param from      The starting square index.
+     * @param to        The ending square index.
+     * @param promotion The piece type a pawn promotes to, or NO_PROMOTION.
+     */
+    public Move(int from, int to, int promotion) {
+        this.from = from;
+        this.to = to;
+        this.promotion = promotion;
+    }
+
+    /**
+     * Gets the starting square index.
+     *
+     * @return The starting square.
+     */
+    public int getFromSquare() {
+        return from;
+    }
+
+    /**
+     * Gets the ending square index.
+     *
+     * @return The ending square.
+     */
+    public int getToSquare() {
+        return to;
+    }
+
+    /**
+     * Gets the starting position.
+     *
+     * @return The starting position.
+     */
+    public Position getFrom() {
+        return new Position(from >>> 3, from & 7);
+    }
+
+    /**
+     * Gets the ending position.
+     *
+     * @return The ending position.
+     */
+    public Position getTo() {
+        return new Position(to >>> 3, to & 7);
+    }
+
+    /**
+     * Gets the piece type a pawn promotes to.
+     *
+     * @return The promotion piece type, or NO_PROMOTION.
+     */
+    public int getPromotion() {
+        return promotion;
+    }
+
+    /**
+     * Packs the move into 16 bits: from (6 bits), to (6 bits) and promotion type (3 bits, 0 for none).
+     * The packed value 0 never names a real move, so it can stand for "no move".
+     *
+     * @return The packed move.
+     */
+    public int pack() {
+        return from | to << 6 | (promotion == NO_PROMOTION ? 0 : promotion) << 12;
+    }
+
+    /**
+     * Rebuilds a move packed with pack().
+     *
+     * @param packed The packed move.
+     * @return The move.
+     */
+    public static Move unpack(int packed) {
+        int promotion = packed >>> 12 & 7;
+        return new Move(packed & 63, packed >>> 6 & 63, promotion == 0 ? NO_PROMOTION : promotion);
+    }
+
+    /**
+     * Encodes a move into an int.
+     *
+     * @param from      The starting square index.
+     * @param to        The ending square index.
+     * @param promotion The piece type a pawn promotes to, or NO_PROMOTION.
+     * @param piece     The type of the moving piece.
+     * @param captured  The type of the captured piece, or -1 for none.
+     * @param flag      One of FLAG_NORMAL, FLAG_DOUBLE_PUSH, FLAG_EN_PASSANT or FLAG_CASTLING.
+     * @return The encoded move.
+     */
+    public static int encode(int from, int to, int promotion, int piece, int captured, int flag) {
+        return from | to << 6 | (promotion == NO_PROMOTION ? 0 : promotion) << 12 | piece << 16
+                | (captured + 1) << 19 | flag << 22;
+    }
+
+    /**
+     * Gets the starting square of an encoded move.
+     *
+     * @param move The encoded move.
+     * @return The starting square index.
+     */
+    public static int fromSquare(int move) {
+        return move & 63;
+    }
+
+    /**
+     * Gets the ending square of an encoded move.
+     *
+     * @param move The encoded move.
+     * @return The ending square index.
+     */
+    public static int toSquare(int move) {
+        return move >>> 6 & 63;
+    }
+
+    /**
+     * Gets the promotion of an encoded move.
+     *
+     * @param move The encoded move.
+     * @return The piece type a pawn promotes to, or NO_PROMOTION.
+     */
+    public static int promotion(int move) {
+        int promotion = move >>> 12 & 7;
+        return promotion == 0 ? NO_PROMOTION : promotion;
+    }
+
+    /**
+     * Gets the type of the piece moved by an encoded move.
+     *
+     * @param move The encoded move.
+     * @return The piece type.
+     */
+    public static int piece(int move) {
+        return move >>> 16 & 7;
+    }
+
+    /**
+     * Gets the type of the piece captured by an encoded move.
+     *
+     * @param move The encoded move.
+     * @return The captured piece type, or -1 for none.
+     */
+    public static int captured(int move) {
+        return (move >>> 19 & 7) - 1;
+    }
+
+    /**
+     * Checks if an encoded move captures a piece.
+     *
+     * @param move The encoded move.
+     * @return true if the move is a capture, including en passant.
+     */
+    public static boolean isCapture(int move) {
+        return (move >>> 19 & 7) != 0;
+    }
+
+    /**
+     * Gets the flag of an encoded move.
+     *
+     * @param move The encoded move.
+     * @return One of FLAG_NORMAL, FLAG_DOUBLE_PUSH, FLAG_EN_PASSANT or FLAG_CASTLING.
+     */
+    public static int flag(int move) {
+        return move >>> 22 & 3;
+    }
+
+    /**
+     * Converts an encoded move into a Move object.
+     *
+     * @param move The encoded move.
+     * @return The move.
+     */
+    public static Move of(int move) {
+        return new Move(fromSquare(move), toSquare(move), promotion(move));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Move move = (Move) obj;
+        return from == move.from && to == move.to && promotion == move.promotion;
+    }
+
+    @Override
+    public int hashCode() {
+        return (from << 6 | to) * 31 + promotion;
+    }
+
+    /**
+     * Gets the move in coordinate notation, for example "e2e4" or "e7e8q".
+     *
+     * @return The move as a string.
+     */
+    @Override
+    public String toString() {
+        String move = squareName(from) + squareName(to);
+        switch (promotion) {
+            case Piece.KNIGHT:
+                return move + "n";
+            case Piece.BISHOP:
+                return move + "b";
+            case Piece.ROOK:
+                return move + "r";
+            case Piece.QUEEN:
+                return move + "q";
+            default:
+                return move;
+        }
+    }
+
+    /**
+     * Reads a move in coordinate notation, as written by toString.
+     *
+     * @param text The move, for example "e2e4" or "e7e8q".
+     * @return The move, or null if the text is not a move in coordinate notation.
+     */
+    public static Move parse(String text) {
+        if (text.length() != 4 && text.length() != 5) {
+            return null;
+        }
+        int from = parseSquare(text, 0);
+        int to = parseSquare(text, 2);
+        int promotion = text.length() == 5 ? "nbrq".indexOf(Character.toLowerCase(text.charAt(4))) : -1;
+        if (from < 0 || to < 0 || (text.length() == 5 && promotion < 0)) {
+            return null;
+        }
+        return new Move(from, to, promotion < 0 ? NO_PROMOTION : Piece.KNIGHT + promotion);
+    }
+
+    /**
+     * Reads a square name such as "e2" inside a string.
+     *
+     * @param text   The string.
+     * @param offset The index of the file letter.
+     * @return The square index, or -1 if there is no square name at the offset.
+     */
+    private static int parseSquare(String text, int offset) {
+        int column = text.charAt(offset) - 'a';
+        int rank = text.charAt(offset + 1) - '1';
+        if (column < 0 || column > 7 || rank < 0 || rank > 7) {
+            return -1;
+        }
+        return (7 - rank) * 8 + column;
+    }
+
+    /**
+     * Converts a square index into its lowercase name, for example "e2".
+     *
+     * @param square The square index.
+     * @return The square name.
+     */
+    public static String squareName(int square) {
+        return "" + (char) ('a' + (square & 7)) + (8 - (square >>> 3));
+    }
+}
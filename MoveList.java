@@ -0,0 +1,85 @@
+package board;
+
+/**
+ * This class represents a reusable buffer of encoded moves (see Move).
+ * It is filled by Board.generateLegalMoves and can be cleared and refilled any number
+ * of times without allocating, so search and validation can keep one list per ply.
+ */
+public final class MoveList {
+    public static final int CAPACITY = 256; // More than the most legal moves any position has
+
+    private final int[] moves = new int[CAPACITY];
+    private int size;
+
+    /**
+     * Removes every move from the list.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds an encoded move to the end of the list.
+     *
+     * @param move The encoded move.
+     */
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    /**
+     * Gets an encoded move.
+     *
+     * @param index The index of the move.
+     * @return The encoded move.
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Swaps two moves in the list.
+     *
+     * @param i The index of the first move.
+     * @param j The index of the second move.
+     */
+    public void swap(int i, int j) {
+        int temp = moves[i];
+        moves[i] = moves[j];
+        moves[j] = temp;
+    }
+
+    /**
+     * Gets the number of moves in the list.
+     *
+     * @return The size of the list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the list has no moves.
+     *
+     * @return true if the list is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Finds a move by its starting square, ending square and promotion, which are the
+     * low 16 bits of an encoded move (see Move.pack).
+     *
+     * @param packed The packed move to look for.
+     * @return The encoded move, or Move.NONE if the list does not contain it.
+     */
+    public int find(int packed) {
+        for (int i = 0; i < size; i++) {
+            if ((moves[i] & 0xFFFF) == packed) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+}
@@ -0,0 +1,181 @@
+package engine;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+
+/**
+ * This class hands out the moves of one node in the order most likely to cause a cutoff,
+ * generating each group only when the previous ones are used up:
+ * the hash move, then captures and promotions by most valuable victim and least valuable
+ * attacker, then the killer moves and the counter move, then the remaining quiet moves by
+ * their history score. A node that is cut off by the hash move or a capture never
+ * generates its quiet moves at all.
+ *
+ * The searcher keeps one picker per ply and resets it at each node, so nothing is allocated.
+ */
+final class MovePicker {
+    private static final int STAGE_HASH = 0;
+    private static final int STAGE_GENERATE_CAPTURES = 1;
+    private static final int STAGE_CAPTURES = 2;
+    private static final int STAGE_KILLERS = 3;
+    private static final int STAGE_GENERATE_QUIETS = 4;
+    private static final int STAGE_QUIETS = 5;
+    private static final int STAGE_DONE = 6;
+
+    private final MoveList moves = new MoveList();
+    private final int[] scores = new int[MoveList.CAPACITY];
+    private final int[] refutations = new int[3]; // Packed killer and counter moves, tried in this order
+    private Board board;
+    private int[] history; // Indexed by color << 12 | from << 6 | to
+    private int hashMove; // Packed
+    private int stage;
+    private int index;
+    private int colorBase; // Offset of the side to move in the history table
+    private int played; // Number of refutations already handed out
+    private final int[] playedRefutations = new int[3]; // Encoded refutations already handed out
+
+    /**
+     * Prepares the picker for a new node.
+     *
+     * @param board       The position of the node.
+     * @param hashMove    The packed move from the transposition table, or Move.NONE.
+     * @param killer1     The most recent packed killer move of this ply, or Move.NONE.
+     * @param killer2     The older packed killer move of this ply, or Move.NONE.
+     * @param counterMove The packed move that last refuted the opponent's previous move, or Move.NONE.
+     * @param history     The history scores of quiet moves.
+     */
+    void reset(Board board, int hashMove, int killer1, int killer2, int counterMove, int[] history) {
+        this.board = board;
+        this.hashMove = hashMove;
+        this.refutations[0] = killer1;
+        this.refutations[1] = killer2;
+        this.refutations[2] = counterMove;
+        this.history = history;
+        this.colorBase = board.isWhiteToMove() ? 0 : 1 << 12;
+        this.stage = STAGE_HASH;
+        this.index = 0;
+        this.played = 0;
+    }
+
+    /**
+     * Gets the next move to search.
+     *
+     * @return The encoded move, or Move.NONE when every legal move has been handed out.
+     */
+    @SuppressWarnings("fallthrough") // Each stage falls into the next once it runs out of moves
+    int next() {
+        switch (stage) {
+            case STAGE_HASH:
+                stage = STAGE_GENERATE_CAPTURES;
+                if (hashMove != Move.NONE) {
+                    int move = board.legalMove(hashMove);
+                    if (move != Move.NONE) {
+                        return move;
+                    }
+                    hashMove = Move.NONE; // Not legal here, so nothing later has to skip it
+                }
+                // Fall through
+            case STAGE_GENERATE_CAPTURES:
+                board.generateCaptures(moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    scores[i] = captureScore(moves.get(i));
+                }
+                index = 0;
+                stage = STAGE_CAPTURES;
+                // Fall through
+            case STAGE_CAPTURES:
+                while (index < moves.size()) {
+                    int move = pickBest();
+                    if ((move & 0xFFFF) != hashMove) {
+                        return move;
+                    }
+                }
+                index = 0;
+                stage = STAGE_KILLERS;
+                // Fall through
+            case STAGE_KILLERS:
+                while (index < refutations.length) {
+                    int packed = refutations[index++];
+                    if (packed == Move.NONE || packed == hashMove || alreadyPlayed(packed)) {
+                        continue;
+                    }
+                    int move = board.legalMove(packed);
+                    // Captures and promotions were already handed out in their own stage
+                    if (move != Move.NONE && !Move.isCapture(move) && Move.promotion(move) == Move.NO_PROMOTION) {
+                        playedRefutations[played++] = move;
+                        return move;
+                    }
+                }
+                stage = STAGE_GENERATE_QUIETS;
+                // Fall through
+            case STAGE_GENERATE_QUIETS:
+                board.generateQuiets(moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    int move = moves.get(i);
+                    scores[i] = history[colorBase | (move & 0xFFF)];
+                }
+                index = 0;
+                stage = STAGE_QUIETS;
+                // Fall through
+            case STAGE_QUIETS:
+                while (index < moves.size()) {
+                    int move = pickBest();
+                    if ((move & 0xFFFF) != hashMove && !alreadyPlayed(move & 0xFFFF)) {
+                        return move;
+                    }
+                }
+                stage = STAGE_DONE;
+                // Fall through
+            default:
+                return Move.NONE;
+        }
+    }
+
+    /**
+     * Moves the highest scored of the remaining moves to the front and hands it out.
+     * A full sort would be wasted on nodes that are cut off after a few moves.
+     *
+     * @return The encoded move.
+     */
+    private int pickBest() {
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        moves.swap(index, best);
+        int score = scores[index];
+        scores[index] = scores[best];
+        scores[best] = score;
+        return moves.get(index++);
+    }
+
+    /**
+     * Checks if a killer or counter move was already handed out at this node.
+     *
+     * @param packed The packed move.
+     * @return true if it was handed out, false otherwise.
+     */
+    private boolean alreadyPlayed(int packed) {
+        for (int i = 0; i < played; i++) {
+            if ((playedRefutations[i] & 0xFFFF) == packed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scores a capture or promotion by most valuable victim, then least valuable attacker.
+     *
+     * @param move The encoded move.
+     * @return A larger number for a move to try earlier.
+     */
+    static int captureScore(int move) {
+        int victim = Move.captured(move) + 1; // 0 when nothing is captured
+        int promotion = Move.promotion(move) == Move.NO_PROMOTION ? 0 : Move.promotion(move);
+        return (victim + promotion) * 8 - Move.piece(move);
+    }
+}
@@ -0,0 +1,29 @@
+package match;
+
+import board.Board;
+
+/**
+ * This interface represents a player in a headless match: anything that can choose a move
+ * in a position, such as an engine or a random mover.
+ *
+ * One source plays every game of its side at once, each game on its own thread, so
+ * chooseMove must be safe to call from several threads with different boards.
+ */
+public interface MoveSource {
+    /**
+     * Chooses a move in a position. The board may be searched in place but must be back in
+     * the same position when the method returns.
+     *
+     * @param board The position, with this source's side to move.
+     * @return The move in the format of Move.pack(), or Move.NONE to resign.
+     * @throws InterruptedException if the thread is interrupted while the move is chosen.
+     */
+    int chooseMove(Board board) throws InterruptedException;
+
+    /**
+     * Gets the name of the player, used in results and PGN tags.
+     *
+     * @return The name.
+     */
+    String getName();
+}
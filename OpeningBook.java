@@ -0,0 +1,218 @@
+package book;
+
+import board.Board;
+import board.Move;
+import pieces.Piece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * This class represents an opening book in its own format: a 16-byte header, holding a magic
+ * number, the version of the keys and the entry count, followed by 16-byte entries, each a
+ * big-endian position key (8 bytes), move (2), weight (2) and learning value (4), sorted by
+ * key so that the moves of a position are found by binary search.
+ *
+ * The keys are the board's own Zobrist keys (Board.getHash()), so books are built from games
+ * with BookBuilder, and files from other programs are rejected when opened rather than
+ * silently giving no moves.
+ *
+ * The file is memory-mapped and probing reads it in place without allocating, and every book
+ * move is checked against the position with Board.legalMove, so a key collision can never
+ * produce an illegal move.
+ */
+public class OpeningBook {
+    public static final int ENTRY_SIZE = 16;
+    static final int HEADER_SIZE = 16; // Magic number (8 bytes), key version (4), entry count (4)
+    static final long MAGIC = 0x5A4F4252424F4F4BL; // "ZOBRBOOK"
+    static final int KEY_VERSION = 1; // Raised whenever Board's keys change
+
+    private final MappedByteBuffer entries;
+    private final int entryCount;
+
+    /**
+     * Opens a book file.
+     *
+     * @param path The book to read.
+     * @throws IOException if the file cannot be read, is larger than 2 GB, was not written by
+     *                     BookBuilder or was written with other keys.
+     */
+    public OpeningBook(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC) {
+                throw new IOException("Not an opening book written by BookBuilder: " + path);
+            }
+            int version = header.getInt();
+            if (version != KEY_VERSION) {
+                throw new IOException("Opening book " + path + " has keys of version " + version + ", expected "
+                        + KEY_VERSION + "; rebuild it with BookBuilder");
+            }
+            long count = header.getInt() & 0xFFFFFFFFL;
+            if (size != HEADER_SIZE + count * ENTRY_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Damaged opening book: " + path + " has " + size + " bytes for " + count
+                        + " entries");
+            }
+            // Stays valid after the channel closes
+            this.entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size - HEADER_SIZE);
+            this.entryCount = (int) count;
+        }
+    }
+
+    /**
+     * Gets the number of entries in the book.
+     *
+     * @return The entry count.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Gets the book move with the highest weight in a position.
+     *
+     * @param board The position.
+     * @return The encoded legal move, or Move.NONE if the book has none for the position.
+     */
+    public int bestMove(Board board) {
+        long key = board.getHash();
+        int best = Move.NONE;
+        int bestWeight = -1;
+        for (int i = firstEntry(key); i < entryCount && key(i) == key; i++) {
+            int move = toMove(board, bookMove(i));
+            if (move != Move.NONE && weight(i) > bestWeight) {
+                best = move;
+                bestWeight = weight(i);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Picks a book move in a position at random, each with a chance in proportion to its weight.
+     *
+     * @param board  The position.
+     * @param random The source of randomness.
+     * @return The encoded legal move, or Move.NONE if the book has no move with a weight above 0.
+     */
+    public int pickMove(Board board, Random random) {
+        long key = board.getHash();
+        int first = firstEntry(key);
+        long total = 0;
+        for (int i = first; i < entryCount && key(i) == key; i++) {
+            if (toMove(board, bookMove(i)) != Move.NONE) {
+                total += weight(i);
+            }
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        long choice = (long) (random.nextDouble() * total);
+        for (int i = first; i < entryCount && key(i) == key; i++) {
+            int move = toMove(board, bookMove(i));
+            if (move != Move.NONE) {
+                choice -= weight(i);
+                if (choice < 0) {
+                    return move;
+                }
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Converts a move to the book move format: to column (bits 0-2), to row counted from
+     * white's side (3-5), from column (6-8), from row (9-11) and promotion type (12-14).
+     * Castling is written as the king taking its own rook.
+     *
+     * @param move The encoded move.
+     * @return The book move.
+     */
+    public static int toBookMove(int move) {
+        int from = Move.fromSquare(move);
+        int to = Move.toSquare(move);
+        if (Move.flag(move) == Move.FLAG_CASTLING) {
+            to = to > from ? to + 1 : to - 2; // The rook's corner
+        }
+        int promotion = Move.promotion(move) == Move.NO_PROMOTION ? 0 : Move.promotion(move);
+        return (to & 7) | (7 - (to >>> 3)) << 3 | (from & 7) << 6 | (7 - (from >>> 3)) << 9 | promotion << 12;
+    }
+
+    /**
+     * Finds the legal move a book move stands for in a position.
+     *
+     * @param board    The position.
+     * @param bookMove The move in the book format.
+     * @return The encoded legal move, or Move.NONE if it is not legal in the position.
+     */
+    public static int toMove(Board board, int bookMove) {
+        int to = (7 - (bookMove >>> 3 & 7)) * 8 + (bookMove & 7);
+        int from = (7 - (bookMove >>> 9 & 7)) * 8 + (bookMove >>> 6 & 7);
+        int promotion = bookMove >>> 12 & 7;
+        // A king taking its own rook from its home square is castling
+        if (board.pieceTypeAt(from) == Piece.KING && (from & 7) == 4 && (to >>> 3) == (from >>> 3)
+                && ((to & 7) == 7 || (to & 7) == 0)) {
+            to = (to & 7) == 7 ? from + 2 : from - 2;
+        }
+        return board.legalMove(from | to << 6 | promotion << 12);
+    }
+
+    /**
+     * Finds the first entry whose key is not below a key, comparing keys as unsigned numbers
+     * like the order BookBuilder sorts them in.
+     *
+     * @param key The position key.
+     * @return The index of the entry, or getEntryCount() if every key is below it.
+     */
+    private int firstEntry(long key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the key of an entry.
+     *
+     * @param index The entry index.
+     * @return The position key.
+     */
+    private long key(int index) {
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    /**
+     * Gets the move of an entry.
+     *
+     * @param index The entry index.
+     * @return The move in the book format.
+     */
+    private int bookMove(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    /**
+     * Gets the weight of an entry.
+     *
+     * @param index The entry index.
+     * @return The weight between 0 and 65535.
+     */
+    private int weight(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+}
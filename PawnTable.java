@@ -0,0 +1,188 @@
+package engine;
+
+import board.Bitboards;
+import board.Board;
+import pieces.Piece;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a small cache of pawn structure scores keyed by Board.getPawnHash().
+ * Pawns move rarely compared to the other pieces, so most positions in a search share
+ * their pawn structure with a position already evaluated, and its doubled, isolated,
+ * backward and passed pawn terms can be read back instead of worked out again.
+ *
+ * Each search thread owns its own table, so entries are plain parallel arrays without
+ * any protection against concurrent writes.
+ */
+public class PawnTable {
+    // Indexed by how many rows the pawn has advanced from its starting row
+    private static final int[] PASSED_MIDDLEGAME = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 20, 35, 60, 100, 150, 0};
+    private static final int DOUBLED_MIDDLEGAME = -10; // Per pawn behind another of the same color
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDDLEGAME = -10; // Per pawn with no friendly pawn on a neighbouring column
+    private static final int ISOLATED_ENDGAME = -15;
+    private static final int BACKWARD_MIDDLEGAME = -8; // Per pawn that cannot safely advance and has no pawn able to support it
+    private static final int BACKWARD_ENDGAME = -10;
+
+    private final long[] keys;
+    private final int[] middlegameScores; // Pawn structure score for white in the middlegame
+    private final int[] endgameScores;
+    private final long[] passedPawns; // Passed pawns of both colors
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs a PawnTable.
+     *
+     * @param entries The number of entries, rounded down to a power of two.
+     */
+    public PawnTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(1, entries));
+        this.keys = new long[size];
+        this.middlegameScores = new int[size];
+        this.endgameScores = new int[size];
+        this.passedPawns = new long[size];
+        this.mask = size - 1;
+        clear();
+    }
+
+    /**
+     * Finds the entry for the pawns of a board, evaluating and storing them on a miss.
+     *
+     * @param board The board whose pawns to look up.
+     * @return The index of the entry, to pass to the accessors.
+     */
+    public int probe(Board board) {
+        long key = board.getPawnHash();
+        int index = (int) (key >>> 40) & mask;
+        if (keys[index] == key) {
+            hits++;
+            return index;
+        }
+        misses++;
+        keys[index] = key;
+        evaluate(index, board.getPieces(true, Piece.PAWN), board.getPieces(false, Piece.PAWN));
+        return index;
+    }
+
+    /**
+     * Gets the middlegame pawn structure score of an entry.
+     *
+     * @param index The entry index returned by probe.
+     * @return The score in centipawns, positive when white is better.
+     */
+    public int middlegame(int index) {
+        return middlegameScores[index];
+    }
+
+    /**
+     * Gets the endgame pawn structure score of an entry.
+     *
+     * @param index The entry index returned by probe.
+     * @return The score in centipawns, positive when white is better.
+     */
+    public int endgame(int index) {
+        return endgameScores[index];
+    }
+
+    /**
+     * Gets the passed pawns of an entry.
+     *
+     * @param index The entry index returned by probe.
+     * @return The squares of the passed pawns of both colors.
+     */
+    public long passedPawns(int index) {
+        return passedPawns[index];
+    }
+
+    /**
+     * Gets the number of lookups that found their pawn structure already stored.
+     *
+     * @return The hit count.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that had to evaluate the pawn structure.
+     *
+     * @return The miss count.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the share of lookups that were hits.
+     *
+     * @return The hit rate between 0 and 1, or 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Removes every entry and resets the hit and miss counters.
+     */
+    public void clear() {
+        Arrays.fill(keys, -1L); // A key no pawn structure is expected to have, as 0 is that of no pawns at all
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Evaluates a pawn structure into an entry.
+     *
+     * @param index      The entry to fill.
+     * @param whitePawns The squares of the white pawns.
+     * @param blackPawns The squares of the black pawns.
+     */
+    private void evaluate(int index, long whitePawns, long blackPawns) {
+        int middlegame = 0;
+        int endgame = 0;
+        long passed = 0L;
+        for (int side = 0; side < 2; side++) {
+            boolean isWhite = side == 0;
+            int sign = isWhite ? 1 : -1;
+            long own = isWhite ? whitePawns : blackPawns;
+            long enemy = isWhite ? blackPawns : whitePawns;
+            long pawns = own;
+            while (pawns != 0L) {
+                int square = Long.numberOfTrailingZeros(pawns);
+                pawns &= pawns - 1;
+                int column = square & 7;
+                long ahead = Bitboards.passedPawnMask(isWhite, square);
+                if ((ahead & enemy) == 0L) {
+                    int advanced = isWhite ? 6 - (square >>> 3) : (square >>> 3) - 1;
+                    middlegame += sign * PASSED_MIDDLEGAME[advanced];
+                    endgame += sign * PASSED_ENDGAME[advanced];
+                    passed |= Bitboards.bit(square);
+                }
+                if ((ahead & Bitboards.file(column) & own) != 0L) {
+                    middlegame += sign * DOUBLED_MIDDLEGAME;
+                    endgame += sign * DOUBLED_ENDGAME;
+                }
+                long neighbours = own & Bitboards.adjacentFiles(column);
+                if (neighbours == 0L) {
+                    middlegame += sign * ISOLATED_MIDDLEGAME;
+                    endgame += sign * ISOLATED_ENDGAME;
+                } else if ((neighbours & ~ahead) == 0L) {
+                    // Every neighbour is already ahead; the pawn is backward if an enemy pawn guards the square in front
+                    int stop = square + (isWhite ? -8 : 8);
+                    if (stop >= 0 && stop < 64 && (Bitboards.pawnAttacks(isWhite, stop) & enemy) != 0L) {
+                        middlegame += sign * BACKWARD_MIDDLEGAME;
+                        endgame += sign * BACKWARD_ENDGAME;
+                    }
+                }
+            }
+        }
+        middlegameScores[index] = middlegame;
+        endgameScores[index] = endgame;
+        passedPawns[index] = passed;
+    }
+}
@@ -0,0 +1,189 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class counts the positions reachable from a board in a fixed number of moves.
+ * The counts are known for standard test positions, which makes perft a check of the
+ * move generator, and the speed of the count is a benchmark of it.
+ *
+ * Root moves are counted in parallel on a ForkJoinPool, each on its own copy of the
+ * board. An optional table keyed by position and remaining depth lets transposed
+ * subtrees be counted once; it is shared by all threads without locks, using the same
+ * XOR check as the engine's transposition table.
+ */
+public class Perft {
+    private final long[] table; // Pairs of (key ^ count, count), or null when hashing is off
+    private final int mask;
+
+    /**
+     * Constructs a Perft counter.
+     *
+     * @param hashMegabytes The size of the subtree table in megabytes, or 0 to disable it.
+     */
+    public Perft(int hashMegabytes) {
+        if (hashMegabytes > 0) {
+            int entries = Integer.highestOneBit((int) Math.min((long) hashMegabytes * 1024 * 1024 / 16, 1 << 28));
+            table = new long[entries * 2];
+            mask = entries - 1;
+        } else {
+            table = null;
+            mask = 0;
+        }
+    }
+
+    /**
+     * Counts the leaf positions at a depth below the board.
+     *
+     * @param board The position to count from, left unchanged.
+     * @param depth The number of moves.
+     * @return The number of positions.
+     */
+    public long count(Board board, int depth) {
+        MoveList[] lists = new MoveList[depth + 1];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new MoveList();
+        }
+        return count(board, depth, lists);
+    }
+
+    /**
+     * Counts the leaf positions at a depth below the board, reusing one move list per depth.
+     *
+     * @param board The position to count from, left unchanged.
+     * @param depth The number of moves.
+     * @param lists The move lists, indexed by remaining depth.
+     * @return The number of positions.
+     */
+    private long count(Board board, int depth, MoveList[] lists) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = lists[depth];
+        board.generateLegalMoves(board.isWhiteToMove(), moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long key = 0L;
+        if (table != null) {
+            key = board.getHash() ^ depth * 0x9E3779B97F4A7C15L;
+            int index = (int) (key >>> 32 & mask) * 2;
+            long count = table[index + 1];
+            if ((table[index] ^ count) == key) {
+                return count;
+            }
+        }
+        long total = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            total += count(board, depth - 1, lists);
+            board.unmakeMove();
+        }
+        if (table != null) {
+            int index = (int) (key >>> 32 & mask) * 2;
+            table[index] = key ^ total;
+            table[index + 1] = total;
+        }
+        return total;
+    }
+
+    /**
+     * Counts the positions below each root move in parallel.
+     *
+     * @param board The position to count from, left unchanged.
+     * @param depth The number of moves, at least 1.
+     * @param pool  The pool that runs one task per root move.
+     * @return The count below each root move, in the order of generateLegalMoves.
+     */
+    public long[] divide(Board board, int depth, ForkJoinPool pool) {
+        List<Move> moves = board.generateLegalMoves(board.isWhiteToMove());
+        List<RecursiveTask<Long>> tasks = new ArrayList<>();
+        for (Move move : moves) {
+            Board copy = new Board(board);
+            tasks.add(new RecursiveTask<Long>() {
+                @Override
+                protected Long compute() {
+                    copy.makeMove(move);
+                    return count(copy, depth - 1);
+                }
+            });
+        }
+        return pool.submit(() -> {
+            RecursiveTask.invokeAll(tasks);
+            long[] counts = new long[tasks.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = tasks.get(i).join();
+            }
+            return counts;
+        }).join();
+    }
+
+    /**
+     * Runs perft from the command line and prints the count below each root move.
+     * Usage: java board.Perft depth [--threads n] [--hash megabytes] [--fen "position"] [moves...]
+     * The moves, in coordinate notation such as e2e4, are played from the given position,
+     * or the starting position, first.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java board.Perft depth [--threads n] [--hash megabytes] [--fen \"position\"] [moves...]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = 0;
+        Board board = new Board();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--hash")) {
+                hash = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--fen")) {
+                board.setFen(args[++i]);
+            } else if (!playMove(board, args[i])) {
+                System.out.println("Illegal move: " + args[i]);
+                return;
+            }
+        }
+
+        Perft perft = new Perft(hash);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Move> moves = board.generateLegalMoves(board.isWhiteToMove());
+        long start = System.nanoTime();
+        long[] counts = depth > 0 ? perft.divide(board, depth, pool) : new long[0];
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000L);
+        pool.shutdown();
+
+        for (int i = 0; i < counts.length; i++) {
+            System.out.println(moves.get(i) + ": " + counts[i]);
+        }
+        long total = depth > 0 ? Arrays.stream(counts).sum() : 1;
+        System.out.println();
+        System.out.println("Nodes: " + total);
+        System.out.println("Time: " + elapsed + " ms");
+        System.out.println("Nodes per second: " + total * 1000 / elapsed);
+    }
+
+    /**
+     * Plays a move given in coordinate notation.
+     *
+     * @param board The board to play on.
+     * @param text  The move, for example "e2e4" or "e7e8q".
+     * @return true if the move was legal and played, false otherwise.
+     */
+    private static boolean playMove(Board board, String text) {
+        for (Move move : board.generateLegalMoves(board.isWhiteToMove())) {
+            if (move.toString().equals(text)) {
+                board.makeMove(move);
+                return true;
+            }
+        }
+        return false;
+    }
+}
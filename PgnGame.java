@@ -0,0 +1,196 @@
+package pgn;
+
+import board.Board;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class represents one game of a PGN file: its tag pairs, the moves played from its
+ * starting position and its result. Moves are kept encoded, as Board.makeMove takes them.
+ */
+public class PgnGame {
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNFINISHED = "*";
+
+    private final Map<String, String> tags; // Tag pairs in the order they were read or set
+    private int[] moves; // Encoded moves, in the order they were played
+    private int moveCount;
+    private String result; // One of the four result constants
+
+    /**
+     * Constructs an empty PgnGame that starts from the starting position and is unfinished.
+     */
+    public PgnGame() {
+        this.tags = new LinkedHashMap<>();
+        this.moves = new int[128];
+        this.result = UNFINISHED;
+    }
+
+    /**
+     * Constructs a PgnGame as an independent copy of another one.
+     *
+     * @param other The game to copy.
+     */
+    public PgnGame(PgnGame other) {
+        this.tags = new LinkedHashMap<>(other.tags);
+        this.moves = Arrays.copyOf(other.moves, Math.max(other.moveCount, 1));
+        this.moveCount = other.moveCount;
+        this.result = other.result;
+    }
+
+    /**
+     * Creates a game from the moves played on a board since its position was set up.
+     *
+     * @param board The board whose move history to record; it is left unchanged.
+     * @return The game, unfinished and without tags apart from the starting position if it
+     *         is not the usual one.
+     */
+    public static PgnGame fromBoard(Board board) {
+        PgnGame game = new PgnGame();
+        Board start = new Board(board);
+        while (start.unmakeMove()) {
+            // Take every move back to reach the position the game started from
+        }
+        String fen = start.toFen();
+        if (!fen.equals(Board.START_FEN)) {
+            game.setTag("SetUp", "1");
+            game.setTag("FEN", fen);
+        }
+        for (int i = 0; i < board.getHistoryLength(); i++) {
+            game.addMove(board.getHistoryMove(i));
+        }
+        return game;
+    }
+
+    /**
+     * Finds the result of a game from the position it has reached.
+     *
+     * @param board The position.
+     * @return WHITE_WINS or BLACK_WINS after checkmate, DRAW after stalemate or a draw by
+     *         the rules (Board.isDraw()), otherwise UNFINISHED.
+     */
+    public static String outcome(Board board) {
+        boolean isWhite = board.isWhiteToMove();
+        if (board.isCheckmate(isWhite)) {
+            return isWhite ? BLACK_WINS : WHITE_WINS;
+        }
+        if (board.isStalemate(isWhite) || board.isDraw()) {
+            return DRAW;
+        }
+        return UNFINISHED;
+    }
+
+    /**
+     * Removes every tag and move and marks the game unfinished, so the object can be reused.
+     */
+    public void clear() {
+        tags.clear();
+        moveCount = 0;
+        result = UNFINISHED;
+    }
+
+    /**
+     * Gets the value of a tag.
+     *
+     * @param name The tag name, for example "White".
+     * @return The value, or null if the game has no such tag.
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * Sets the value of a tag, adding it after the existing ones if it is new.
+     *
+     * @param name  The tag name.
+     * @param value The value.
+     */
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    /**
+     * Gets every tag of the game.
+     *
+     * @return An unmodifiable view of the tags in their order.
+     */
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * Gets the position the game starts from.
+     *
+     * @return The FEN tag if the game has one, or Board.START_FEN.
+     */
+    public String getStartFen() {
+        String fen = tags.get("FEN");
+        return fen == null ? Board.START_FEN : fen;
+    }
+
+    /**
+     * Adds a move at the end of the game.
+     *
+     * @param move The encoded move.
+     */
+    public void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[moveCount++] = move;
+    }
+
+    /**
+     * Gets the number of moves played, counting each side's move separately.
+     *
+     * @return The number of plies.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets a move of the game.
+     *
+     * @param index The index of the move, 0 for the first one played.
+     * @return The encoded move.
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Gets the result of the game.
+     *
+     * @return WHITE_WINS, BLACK_WINS, DRAW or UNFINISHED.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Sets the result of the game; the Result tag follows it when the game is written.
+     *
+     * @param result WHITE_WINS, BLACK_WINS, DRAW or UNFINISHED.
+     */
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * Sets up a board at the starting position of the game and plays its moves on it.
+     *
+     * @param board The board to play the game on; its previous position is replaced.
+     */
+    public void replay(Board board) {
+        board.setFen(getStartFen());
+        for (int i = 0; i < moveCount; i++) {
+            board.makeMove(moves[i]);
+        }
+    }
+}
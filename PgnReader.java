@@ -0,0 +1,551 @@
+package pgn;
+
+import board.Board;
+import board.Move;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class reads the games of a PGN file one at a time, decoding every move against a board.
+ *
+ * The file is memory-mapped and scanned byte by byte: moves are decoded in place by San.parse,
+ * and comments, variations and annotation glyphs are skipped without being copied, so only
+ * the tag values of each game become Strings. Files larger than one mapping are read through
+ * a window that moves forward a game at a time.
+ *
+ * A game with an invalid FEN tag or a move that is not legal is skipped up to the next tag
+ * section and counted, so one corrupt game does not end the reading of a whole archive.
+ */
+public class PgnReader implements Closeable {
+    private static final long WINDOW_SIZE = 1L << 30; // Bytes mapped at once; a single game must fit
+    private static final byte[] WHITE_WINS = {'1', '-', '0'};
+    private static final byte[] BLACK_WINS = {'0', '-', '1'};
+    private static final byte[] DRAW = {'1', '/', '2', '-', '1', '/', '2'};
+    private static final byte[] EVENT_TAG = {'[', 'E', 'v', 'e', 'n', 't'};
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final Board board; // Position of the game being read
+    private final PgnGame game; // Reused for every game
+    private MappedByteBuffer buffer; // The mapped window
+    private long windowStart; // File offset of the first byte of the window
+    private int position; // Index of the next byte to read in the window
+    private int limit; // Number of bytes in the window
+    private boolean hitLimit; // Set when reading ran past the end of the window
+    private byte[] text; // Reused to collect tag names and values
+    private long gamesRead;
+    private long gamesSkipped;
+    private String error; // Why the game being read is skipped, or null
+    private String lastError; // Why the last skipped game was skipped, or null
+
+    /**
+     * Opens a PGN file for reading.
+     *
+     * @param path The file to read.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public PgnReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.board = new Board();
+        this.game = new PgnGame();
+        this.text = new byte[256];
+        map(0);
+    }
+
+    /**
+     * Reads the next game.
+     *
+     * Games that cannot be read are skipped and counted by getGamesSkipped().
+     *
+     * @return true if a game was read into getGame(), false at the end of the file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int start = position;
+            hitLimit = false;
+            boolean read = readGame();
+            if (!isCutOff()) {
+                if (error != null) {
+                    gamesSkipped++;
+                    lastError = error;
+                    continue;
+                }
+                if (read) {
+                    gamesRead++;
+                }
+                return read;
+            }
+            // The game runs past the window, so map a new one starting at the game and read it again
+            if (start == 0) {
+                throw new IOException("Game at byte " + windowStart + " is longer than " + WINDOW_SIZE + " bytes");
+            }
+            map(windowStart + start);
+        }
+    }
+
+    /**
+     * Gets the game last read by next(). The same object is refilled by every call.
+     *
+     * @return The game.
+     */
+    public PgnGame getGame() {
+        return game;
+    }
+
+    /**
+     * Gets the number of games read so far.
+     *
+     * @return The game count.
+     */
+    public long getGamesRead() {
+        return gamesRead;
+    }
+
+    /**
+     * Gets the number of games skipped because they had an invalid FEN tag or an illegal move.
+     *
+     * @return The skipped game count.
+     */
+    public long getGamesSkipped() {
+        return gamesSkipped;
+    }
+
+    /**
+     * Gets why the last skipped game was skipped.
+     *
+     * @return The reason, naming the game and its byte offset, or null if no game was skipped.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Hands every remaining game to a callback. The game object is reused for the next game
+     * once the callback returns, so it must be copied to be kept.
+     *
+     * @param consumer The callback.
+     * @return The number of games handed out.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public long read(Consumer<PgnGame> consumer) throws IOException {
+        long count = 0;
+        while (next()) {
+            consumer.accept(game);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the remaining games as a sequential stream. Each game is a copy that may be kept;
+     * closing the stream closes the reader.
+     *
+     * @return The stream of games.
+     */
+    public Stream<PgnGame> games() {
+        Spliterator<PgnGame> games = new Spliterators.AbstractSpliterator<PgnGame>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super PgnGame> action) {
+                try {
+                    if (!next()) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                action.accept(new PgnGame(game));
+                return true;
+            }
+        };
+        return StreamSupport.stream(games, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Maps the window of the file starting at an offset.
+     *
+     * @param offset The file offset of the window.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        limit = (int) Math.min(WINDOW_SIZE, fileSize - offset);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, limit);
+        position = 0;
+    }
+
+    /**
+     * Reads one game: its tag pairs, then its moves up to the result or the next game.
+     *
+     * @return true if a game was found, false if only separators were left in the window.
+     */
+    private boolean readGame() {
+        game.clear();
+        error = null;
+        int gameStart = position;
+        int c = skipSeparators();
+        boolean found = false;
+        while (c == '[') {
+            readTag();
+            found = true;
+            c = skipSeparators();
+        }
+        if (isCutOff()) {
+            return found; // A tag may be cut off, so the game is read again from a new window
+        }
+        try {
+            board.setFen(game.getStartFen());
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage() + " in game " + (gamesRead + gamesSkipped + 1) + " at byte "
+                    + (windowStart + gameStart);
+            skipToNextGame();
+            return true;
+        }
+        while (true) {
+            c = skipSeparators();
+            if (c < 0 || c == '[') {
+                return found; // The file or the next game starts without a result
+            }
+            found = true;
+            if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                position++;
+                skipWhile(true); // A numeric annotation glyph
+            } else if (c == ')' || c == '.') {
+                position++;
+            } else if (c == '*') {
+                position++;
+                game.setResult(PgnGame.UNFINISHED);
+                return true;
+            } else if (c >= '0' && c <= '9' && !isCastling()) {
+                String result = readResult();
+                if (result != null) {
+                    game.setResult(result);
+                    return true;
+                }
+                skipWhile(true); // A move number, with any dots after it
+                while (peek() == '.') {
+                    position++;
+                }
+            } else {
+                readMove();
+                if (error != null) {
+                    skipToNextGame();
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one SAN token and plays it, or sets the error if it is not a legal move.
+     */
+    private void readMove() {
+        int start = position;
+        while (!isDelimiter(peek())) {
+            position++;
+        }
+        if (isCutOff()) {
+            return; // The token may be cut off, so the game is read again from a new window
+        }
+        int move = San.parse(board, buffer, start, position);
+        if (move == Move.NONE) {
+            byte[] token = new byte[position - start];
+            for (int i = 0; i < token.length; i++) {
+                token[i] = buffer.get(start + i);
+            }
+            error = "Illegal move " + new String(token, StandardCharsets.UTF_8) + " in game "
+                    + (gamesRead + gamesSkipped + 1) + " at byte " + (windowStart + start);
+            return;
+        }
+        board.makeMove(move);
+        game.addMove(move);
+    }
+
+    /**
+     * Reads a tag pair such as [White "Kasparov, Garry"] into the game.
+     */
+    private void readTag() {
+        position++; // The opening bracket
+        skipWhile(false);
+        String name = readText(false);
+        skipWhile(false);
+        String value = "";
+        if (peek() == '"') {
+            position++;
+            value = readText(true);
+        }
+        while (peek() >= 0 && peek() != ']' && peek() != '\n') {
+            position++;
+        }
+        if (peek() == ']') {
+            position++;
+        }
+        game.setTag(name, value);
+    }
+
+    /**
+     * Reads a tag name, or a tag value up to its closing quote with its escapes removed.
+     *
+     * @param quoted true for a value, false for a name.
+     * @return The text.
+     */
+    private String readText(boolean quoted) {
+        int length = 0;
+        while (true) {
+            int c = peek();
+            if (c < 0 || c == '\n' || (quoted ? c == '"' : c == ']' || c == '"' || isSpace(c))) {
+                break;
+            }
+            position++;
+            if (quoted && c == '\\' && (peek() == '"' || peek() == '\\')) {
+                c = peek();
+                position++;
+            }
+            if (length == text.length) {
+                text = Arrays.copyOf(text, length * 2);
+            }
+            text[length++] = (byte) c;
+        }
+        if (quoted && peek() == '"') {
+            position++;
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a game result if one starts at the current byte.
+     *
+     * @return The result constant, or null if the token is not a result.
+     */
+    private String readResult() {
+        if (matches(DRAW)) {
+            return PgnGame.DRAW;
+        }
+        if (matches(WHITE_WINS)) {
+            return PgnGame.WHITE_WINS;
+        }
+        if (matches(BLACK_WINS)) {
+            return PgnGame.BLACK_WINS;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a whole token at the current byte equals some text, and skips it if it does.
+     *
+     * @param expected The text.
+     * @return true if the token matched, false otherwise.
+     */
+    private boolean matches(byte[] expected) {
+        if (position + expected.length > limit) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        int end = position + expected.length;
+        if (end < limit && !isDelimiter(buffer.get(end))) {
+            return false;
+        }
+        position = end;
+        return true;
+    }
+
+    /**
+     * Checks if the token at the current byte is castling written with zeros, such as 0-0.
+     *
+     * @return true if it is, false otherwise.
+     */
+    private boolean isCastling() {
+        return position + 2 < limit && buffer.get(position) == '0' && buffer.get(position + 1) == '-'
+                && buffer.get(position + 2) == '0';
+    }
+
+    /**
+     * Skips a variation in parentheses, including nested variations and comments inside it.
+     */
+    private void skipVariation() {
+        int depth = 0;
+        while (true) {
+            int c = peek();
+            if (c < 0) {
+                return;
+            }
+            position++;
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == ';') {
+                skipUntil('\n');
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of a game that cannot be read, up to an Event tag at the start of a line,
+     * the first tag of every game in the standard tag order.
+     */
+    private void skipToNextGame() {
+        while (true) {
+            int c = peek();
+            if (c < 0 || c == '[' && (position == 0 || buffer.get(position - 1) == '\n') && matchesAhead(EVENT_TAG)) {
+                return;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Checks if some text follows the current byte, without moving past it.
+     *
+     * @param expected The text.
+     * @return true if the bytes at the current position equal the text, false otherwise.
+     */
+    private boolean matchesAhead(byte[] expected) {
+        if (position + expected.length > limit) {
+            hitLimit = true;
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips whitespace, comments and escaped lines.
+     *
+     * @return The next byte after them, or -1 at the end of the window.
+     */
+    private int skipSeparators() {
+        while (true) {
+            int c = peek();
+            if (isSpace(c)) {
+                position++;
+            } else if (c == '{') {
+                position++;
+                skipUntil('}');
+            } else if (c == ';' || c == '%' && (position == 0 || buffer.get(position - 1) == '\n')) {
+                skipUntil('\n');
+            } else {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * Skips bytes up to and including a terminator.
+     *
+     * @param terminator The byte that ends the skipped text.
+     */
+    private void skipUntil(int terminator) {
+        while (true) {
+            int c = peek();
+            if (c < 0) {
+                return;
+            }
+            position++;
+            if (c == terminator) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of a token, or a run of spaces and tabs.
+     *
+     * @param token true to skip token bytes, false to skip spaces and tabs.
+     */
+    private void skipWhile(boolean token) {
+        while (true) {
+            int c = peek();
+            if (c < 0 || (token ? isDelimiter(c) : c != ' ' && c != '\t')) {
+                return;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Checks if reading ran past the end of the window while more of the file follows it.
+     *
+     * @return true if the game being read may be incomplete, false otherwise.
+     */
+    private boolean isCutOff() {
+        return hitLimit && windowStart + limit < fileSize;
+    }
+
+    /**
+     * Gets the byte at the current position without moving past it.
+     *
+     * @return The byte as an unsigned value, or -1 at the end of the window.
+     */
+    private int peek() {
+        if (position >= limit) {
+            hitLimit = true;
+            return -1;
+        }
+        return buffer.get(position) & 0xFF;
+    }
+
+    /**
+     * Checks if a byte ends a move or number token.
+     *
+     * @param c The byte, or -1 at the end of the window.
+     * @return true if it ends a token, false otherwise.
+     */
+    private static boolean isDelimiter(int c) {
+        return c < 0 || isSpace(c) || c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ']'
+                || c == ';' || c == '$' || c == '.';
+    }
+
+    /**
+     * Checks if a byte is whitespace.
+     *
+     * @param c The byte, or -1 at the end of the window.
+     * @return true if it is whitespace, false otherwise.
+     */
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
@@ -0,0 +1,156 @@
+package pgn;
+
+import board.Board;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * This class writes games in PGN, one after another, to a character stream.
+ *
+ * The seven standard tags come first in their usual order, with "?" for any the game does
+ * not set, followed by the other tags and the moves in SAN, wrapped at 80 columns.
+ */
+public class PgnWriter implements Closeable, Flushable {
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final int LINE_LENGTH = 80;
+
+    private final Writer out;
+    private final Board board; // Replays each game to write its moves in SAN
+    private final StringBuilder line; // The movetext line being filled
+
+    /**
+     * Constructs a PgnWriter over a character stream.
+     *
+     * @param out The stream to write to.
+     */
+    public PgnWriter(Writer out) {
+        this.out = out;
+        this.board = new Board();
+        this.line = new StringBuilder(LINE_LENGTH + 16);
+    }
+
+    /**
+     * Opens a PGN file for writing, adding the games after any already in it.
+     *
+     * @param path The file to write to, created if it does not exist.
+     * @return The writer.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static PgnWriter append(Path path) throws IOException {
+        return new PgnWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Writes one game followed by a blank line.
+     *
+     * @param game The game to write.
+     * @throws IOException              if the stream cannot be written.
+     * @throws IllegalArgumentException if the game has an invalid FEN tag.
+     */
+    public void write(PgnGame game) throws IOException {
+        Map<String, String> tags = game.getTags();
+        for (String name : SEVEN_TAG_ROSTER) {
+            String value = name.equals("Result") ? game.getResult() : tags.get(name);
+            writeTag(name, value != null ? value : name.equals("Date") ? "????.??.??" : "?");
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRosterTag(tag.getKey())) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+        out.write('\n');
+
+        board.setFen(game.getStartFen());
+        line.setLength(0);
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            int move = game.getMove(i);
+            if (board.isWhiteToMove()) {
+                addToken(board.getFullmoveNumber() + ".");
+            } else if (i == 0) {
+                addToken(board.getFullmoveNumber() + "...");
+            }
+            addToken(San.format(board, move));
+            board.makeMove(move);
+        }
+        addToken(game.getResult());
+        out.write(line.toString());
+        out.write("\n\n");
+    }
+
+    /**
+     * Writes out anything buffered by the stream.
+     *
+     * @throws IOException if the stream cannot be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException if the stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Writes a tag pair, escaping quotes and backslashes in the value.
+     *
+     * @param name  The tag name.
+     * @param value The value.
+     * @throws IOException if the stream cannot be written.
+     */
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        out.write("\"]\n");
+    }
+
+    /**
+     * Adds a token to the movetext line, starting a new line when it would become too long.
+     *
+     * @param token The move number, move or result.
+     * @throws IOException if the stream cannot be written.
+     */
+    private void addToken(String token) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+            out.write(line.toString());
+            out.write('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(token);
+    }
+
+    /**
+     * Checks if a tag is one of the seven standard tags.
+     *
+     * @param name The tag name.
+     * @return true if it is, false otherwise.
+     */
+    private static boolean isRosterTag(String name) {
+        for (String roster : SEVEN_TAG_ROSTER) {
+            if (roster.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,9 +1,18 @@
 package pieces;
 
+import board.Bitboards;
+
 /**
  * Abstract class representing a chess piece.
  */
 public abstract class Piece {
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
     private boolean isWhite;
     private Position position;
 
@@ -57,6 +66,63 @@ public abstract class Piece {
      */
     public abstract boolean validateMove(Piece[][] board, int currentRow, int currentCol, int newRow, int newCol);
 
+    /**
+     * Gets the type of the piece, one of PAWN, KNIGHT, BISHOP, ROOK, QUEEN or KING.
+     *
+     * @return The piece type.
+     */
+    public abstract int getType();
+
+    /**
+     * Checks that no piece stands between two squares on the same row, column or diagonal.
+     * The squares in between come from a precomputed table, so only they are looked at.
+     *
+     * @param board       The current state of the board.
+     * @param currentRow  The row of the first square.
+     * @param currentCol  The column of the first square.
+     * @param newRow      The row of the second square.
+     * @param newCol      The column of the second square.
+     * @return true if every square in between is empty, false otherwise.
+     */
+    protected static boolean isPathClear(Piece[][] board, int currentRow, int currentCol, int newRow, int newCol) {
+        long path = Bitboards.between(Bitboards.square(currentRow, currentCol), Bitboards.square(newRow, newCol));
+        while (path != 0L) {
+            int square = Long.numberOfTrailingZeros(path);
+            if (board[square >>> 3][square & 7] != null) {
+                return false;
+            }
+            path &= path - 1;
+        }
+        return true;
+    }
+
+    /**
+     * Creates a piece of the given type.
+     *
+     * @param type     The piece type.
+     * @param isWhite  Indicates if the piece is white.
+     * @param position The initial position of the piece.
+     * @return The new piece.
+     */
+    public static Piece create(int type, boolean isWhite, Position position) {
+        switch (type) {
+            case PAWN:
+                return new Pawn(isWhite, position);
+            case KNIGHT:
+                return new Knight(isWhite, position);
+            case BISHOP:
+                return new Bishop(isWhite, position);
+            case ROOK:
+                return new Rook(isWhite, position);
+            case QUEEN:
+                return new Queen(isWhite, position);
+            case KING:
+                return new King(isWhite, position);
+            default:
+                throw new IllegalArgumentException("Unknown piece type: " + type);
+        }
+    }
+
     @Override
     public abstract String toString();
 
@@ -79,7 +145,13 @@ public abstract class Piece {
             if ((newRow >= 8 || newRow < 0) || (newCol >= 8 || newCol < 0)) {
                 return false;
             }
-            return Math.abs(newRow - currentRow) == Math.abs(newCol - currentCol);
+            return Math.abs(newRow - currentRow) == Math.abs(newCol - currentCol)
+                    && isPathClear(board, currentRow, currentCol, newRow, newCol);
+        }
+
+        @Override
+        public int getType() {
+            return BISHOP;
         }
 
         @Override
@@ -112,6 +184,11 @@ public abstract class Piece {
             return (rowDiff == 2 && colDiff == 1) || (rowDiff == 1 && colDiff == 2);
         }
 
+        @Override
+        public int getType() {
+            return KNIGHT;
+        }
+
         @Override
         public String toString() {
             return this.isWhite() ? "wN" : "bN";
@@ -137,7 +214,13 @@ public abstract class Piece {
             if ((newRow >= 8 || newRow < 0) || (newCol >= 8 || newCol < 0)) {
                 return false;
             }
-            return newRow == currentRow || newCol == currentCol;
+            return (newRow == currentRow || newCol == currentCol)
+                    && isPathClear(board, currentRow, currentCol, newRow, newCol);
+        }
+
+        @Override
+        public int getType() {
+            return ROOK;
         }
 
         @Override
@@ -167,7 +250,13 @@ public abstract class Piece {
             }
             int rowDiff = Math.abs(newRow - currentRow);
             int colDiff = Math.abs(newCol - currentCol);
-            return rowDiff == colDiff || newRow == currentRow || newCol == currentCol;
+            return (rowDiff == colDiff || newRow == currentRow || newCol == currentCol)
+                    && isPathClear(board, currentRow, currentCol, newRow, newCol);
+        }
+
+        @Override
+        public int getType() {
+            return QUEEN;
         }
 
         @Override
@@ -200,6 +289,11 @@ public abstract class Piece {
             return rowDiff <= 1 && colDiff <= 1;
         }
 
+        @Override
+        public int getType() {
+            return KING;
+        }
+
         @Override
         public String toString() {
             return this.isWhite() ? "wK" : "bK";
@@ -251,6 +345,11 @@ public static class Pawn extends Piece {
         return false;
     }
 
+    @Override
+    public int getType() {
+        return PAWN;
+    }
+
     @Override
     public String toString() {
         return this.isWhite() ? "wp" : "bp";
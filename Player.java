@@ -1,16 +1,21 @@
 package pieces;
 
+import java.util.List;
 import java.util.Scanner;
 import board.Board;
+import engine.Engine;
+import engine.SearchLimits;
+import engine.SearchResult;
 
 /**
  * This class represents a player in the chess game.
  */
 public class Player {
     private boolean isWhite; // Indicates if the player is using white pieces
-    private Piece[] availablePieces = new Piece[16];
     private Board board;
     private String name;
+    private Engine engine; // Chooses the moves when the player is the computer
+    private SearchLimits limits; // The budget of each of the engine's searches
 
     /**
      * Constructs a Player with a specified color and board.
@@ -21,40 +26,84 @@ public class Player {
     public Player(boolean isWhite, Board board) {
         this.isWhite = isWhite;
         this.board = board;
-        String color = isWhite ? "white" : "black";
+    }
 
-        if (color.equals("black")) {
-            int tempIndex = 0;
-            for (int i = 0; i < 2; i++) {
-                for (int j = 0; j < 8; j++) {
-                    availablePieces[tempIndex] = board.getPiece(new Position(i, j));
-                    tempIndex++;
+    /**
+     * Gets the pieces the player still has on the board. They are read from the board's
+     * piece list, so captures and promotions are always reflected.
+     *
+     * @return The player's pieces.
+     */
+    public List<Piece> getAvailablePieces() {
+        return board.getPieceList(isWhite);
+    }
+
+    /**
+     * Makes a move based on user input, asking again until a legal move is entered.
+     * If the player has an engine, the engine chooses the move instead.
+     *
+     * @param scnr Scanner to read user input.
+     * @throws IllegalStateException if the board rejects the move the engine chose.
+     */
+    public void makeMove(Scanner scnr) {
+        if (engine != null) {
+            SearchResult result = engine.search(board, limits);
+            if (result.getBestMove() != null) {
+                System.out.println(name + " plays " + result.getBestMove());
+                if (!board.movePiece(result.getBestMove())) {
+                    throw new IllegalStateException("The engine chose an illegal move: " + result.getBestMove());
                 }
             }
-        } else if (color.equals("white")) {
-            int tempIndex = 0;
-            for (int i = 7; i > 5; i--) {
-                for (int j = 0; j < 8; j++) {
-                    availablePieces[tempIndex] = board.getPiece(new Position(i, j));
-                    tempIndex++;
+            return;
+        }
+        while (true) {
+            System.out.print("Enter your next move: ");
+            String moveFrom = scnr.next().toUpperCase();
+            String moveTo = scnr.next().toUpperCase();
+            if (scnr.hasNextLine()) {
+                scnr.nextLine(); // Drop the rest of the line, so later prompts start on a fresh one
+            }
+
+            Position from = new Position(moveFrom);
+            Position to = new Position(moveTo);
+            if (isOnBoard(from) && isOnBoard(to)) {
+                Piece piece = board.getPiece(from);
+                if (piece != null && piece.isWhite() == isWhite && board.movePiece(from, to)) {
+                    return;
                 }
             }
+            System.out.println("Invalid move, try again.");
         }
     }
 
     /**
-     * Makes a move based on user input.
+     * Checks if a position lies on the board.
      *
-     * @param scnr Scanner to read user input.
+     * @param position The position to check.
+     * @return true if the position is on the board, false otherwise.
      */
-    public void makeMove(Scanner scnr) {
-        System.out.print("Enter your next move: ");
-        String moveFrom = scnr.next();
-        String moveTo = scnr.next();
+    private boolean isOnBoard(Position position) {
+        return position.getRow() >= 0 && position.getRow() < 8 && position.getColumn() >= 0 && position.getColumn() < 8;
+    }
+
+    /**
+     * Lets an engine choose this player's moves.
+     *
+     * @param engine The engine, or null to read moves from the user again.
+     * @param limits The budget of each search.
+     */
+    public void setEngine(Engine engine, SearchLimits limits) {
+        this.engine = engine;
+        this.limits = limits;
+    }
 
-        Position from = new Position(moveFrom);
-        Position to = new Position(moveTo);
-        board.movePiece(from, to);
+    /**
+     * Checks if the computer chooses this player's moves.
+     *
+     * @return true if the player has an engine, false otherwise.
+     */
+    public boolean isComputer() {
+        return engine != null;
     }
 
     /**
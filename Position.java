@@ -4,6 +4,16 @@ package pieces;
  * This class represents a position on the chessboard.
  */
 public class Position {
+    private static final Position[][] CACHE = new Position[8][8]; // Shared instances of every square
+
+    static {
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                CACHE[row][column] = new Position(row, column);
+            }
+        }
+    }
+
     private int row; // The row of the position
     private int column; // The column of the position
 
@@ -28,6 +38,18 @@ public class Position {
         this.column = pos.charAt(0) - 'A'; // Convert the character part of the string to a column
     }
 
+    /**
+     * Gets the shared instance of a square on the board, without allocating.
+     * Positions cannot be changed once built, so one instance per square can be shared.
+     * 
+     * @param row The row of the position, between 0 and 7.
+     * @param column The column of the position, between 0 and 7.
+     * @return The position.
+     */
+    public static Position of(int row, int column) {
+        return CACHE[row][column];
+    }
+
     /**
      * Gets the row of the position.
      * 
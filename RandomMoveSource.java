@@ -0,0 +1,41 @@
+package match;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class represents a player that picks a legal move at random. It costs almost
+ * nothing to run, so it serves as a baseline opponent and for testing the match runner.
+ */
+public class RandomMoveSource implements MoveSource {
+    private final ThreadLocal<MoveList> moves = ThreadLocal.withInitial(MoveList::new); // One buffer per game thread
+
+    /**
+     * Picks a legal move at random.
+     *
+     * @param board The position.
+     * @return The packed move, or Move.NONE if there is no legal move.
+     */
+    @Override
+    public int chooseMove(Board board) {
+        MoveList list = moves.get();
+        board.generateLegalMoves(board.isWhiteToMove(), list);
+        if (list.isEmpty()) {
+            return Move.NONE;
+        }
+        return Move.of(list.get(ThreadLocalRandom.current().nextInt(list.size()))).pack();
+    }
+
+    /**
+     * Gets the name of the player.
+     *
+     * @return "Random".
+     */
+    @Override
+    public String getName() {
+        return "Random";
+    }
+}
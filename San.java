@@ -0,0 +1,272 @@
+package pgn;
+
+import board.Bitboards;
+import board.Board;
+import board.Move;
+import pieces.Piece;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class converts moves to and from Standard Algebraic Notation, for example "Nbd7",
+ * "exd5", "O-O" or "e8=Q+".
+ *
+ * Parsing reads the bytes of a buffer in place, so a reader can decode every move of a
+ * large file without turning each one into a String. Instead of generating every legal
+ * move, it looks up the few pieces of the named type that attack the destination square
+ * and asks the board which of them may legally move there.
+ */
+public final class San {
+    private static final String PIECE_LETTERS = "PNBRQK"; // Indexed by piece type
+
+    private San() {
+    }
+
+    /**
+     * Finds the legal move a SAN string names.
+     *
+     * @param board The position the move is played in.
+     * @param san   The move in SAN.
+     * @return The encoded move, or Move.NONE if no single legal move matches.
+     */
+    public static int parse(Board board, String san) {
+        byte[] bytes = san.getBytes(StandardCharsets.US_ASCII);
+        return parse(board, ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Finds the legal move a SAN token names, reading it straight from a buffer.
+     * Check and mate signs and annotations such as "!?" after the move are ignored.
+     *
+     * @param board The position the move is played in.
+     * @param bytes The buffer holding the token; its position is not changed.
+     * @param start The index of the first byte of the token.
+     * @param end   The index just past the last byte of the token.
+     * @return The encoded move, or Move.NONE if no single legal move matches.
+     */
+    public static int parse(Board board, ByteBuffer bytes, int start, int end) {
+        while (end > start && isSuffix(bytes.get(end - 1))) {
+            end--;
+        }
+        boolean isWhite = board.isWhiteToMove();
+        int length = end - start;
+        if (length == 3 || length == 5) {
+            int castling = castlingSide(bytes, start, length);
+            if (castling != 0) {
+                int king = board.getKingSquare(isWhite);
+                return king == Board.NO_SQUARE ? Move.NONE : board.legalMove(king | (king + castling) << 6);
+            }
+        }
+
+        int type = Piece.PAWN;
+        if (length > 0) {
+            int letter = PIECE_LETTERS.indexOf(bytes.get(start));
+            if (letter > Piece.PAWN) {
+                type = letter;
+                start++;
+            }
+        }
+        int promotion = Move.NO_PROMOTION;
+        if (type == Piece.PAWN && end - start >= 3) {
+            int letter = PIECE_LETTERS.indexOf(bytes.get(end - 1));
+            if (letter > Piece.PAWN && letter < Piece.KING) {
+                promotion = letter;
+                end -= bytes.get(end - 2) == '=' ? 2 : 1;
+            }
+        }
+        if (end - start < 2) {
+            return Move.NONE;
+        }
+        int toColumn = bytes.get(end - 2) - 'a';
+        int toRank = bytes.get(end - 1) - '1';
+        if (toColumn < 0 || toColumn > 7 || toRank < 0 || toRank > 7) {
+            return Move.NONE;
+        }
+        int to = Bitboards.square(7 - toRank, toColumn);
+
+        // Whatever stands between the piece letter and the destination narrows down the starting square
+        long allowed = -1L;
+        boolean capture = false;
+        for (int i = start; i < end - 2; i++) {
+            byte c = bytes.get(i);
+            if (c >= 'a' && c <= 'h') {
+                allowed &= Bitboards.file(c - 'a');
+            } else if (c >= '1' && c <= '8') {
+                allowed &= 0xFFL << 8 * ('8' - c);
+            } else if (c == 'x' || c == ':') {
+                capture = true;
+            } else if (c != '-') {
+                return Move.NONE;
+            }
+        }
+        // A pawn move naming its starting column is a capture even without the x
+        capture |= type == Piece.PAWN && allowed != -1L;
+        long candidates = origins(board, isWhite, type, to, capture) & allowed;
+
+        int found = Move.NONE;
+        int packed = to << 6 | (promotion == Move.NO_PROMOTION ? 0 : promotion) << 12;
+        while (candidates != 0L) {
+            int from = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            int move = board.legalMove(packed | from);
+            if (move != Move.NONE) {
+                if (found != Move.NONE) {
+                    return Move.NONE; // Ambiguous
+                }
+                found = move;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes a legal move in SAN, with the least disambiguation needed and a check or mate sign.
+     *
+     * @param board The position the move is played in; it is left unchanged.
+     * @param move  The encoded move.
+     * @return The move in SAN.
+     */
+    public static String format(Board board, int move) {
+        StringBuilder san = new StringBuilder(8);
+        int from = Move.fromSquare(move);
+        int to = Move.toSquare(move);
+        int type = Move.piece(move);
+        boolean isWhite = board.isWhiteToMove();
+        if (Move.flag(move) == Move.FLAG_CASTLING) {
+            san.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            if (type == Piece.PAWN) {
+                if (Move.isCapture(move)) {
+                    san.append((char) ('a' + (from & 7)));
+                }
+            } else {
+                san.append(PIECE_LETTERS.charAt(type));
+                appendDisambiguation(san, board, isWhite, type, from, to);
+            }
+            if (Move.isCapture(move)) {
+                san.append('x');
+            }
+            san.append(Move.squareName(to));
+            if (Move.promotion(move) != Move.NO_PROMOTION) {
+                san.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+            }
+        }
+        board.makeMove(move);
+        if (board.isCheckmate(!isWhite)) {
+            san.append('#');
+        } else if (board.isInCheck()) {
+            san.append('+');
+        }
+        board.unmakeMove();
+        return san.toString();
+    }
+
+    /**
+     * Adds the starting column, row or square of a piece move when another piece of the
+     * same type could also legally move to the destination.
+     *
+     * @param san     The move being written.
+     * @param board   The position the move is played in.
+     * @param isWhite The color of the moving piece.
+     * @param type    The piece type.
+     * @param from    The starting square.
+     * @param to      The ending square.
+     */
+    private static void appendDisambiguation(StringBuilder san, Board board, boolean isWhite, int type, int from, int to) {
+        long others = origins(board, isWhite, type, to, false) & ~Bitboards.bit(from);
+        boolean ambiguous = false;
+        boolean sameColumn = false;
+        boolean sameRow = false;
+        while (others != 0L) {
+            int other = Long.numberOfTrailingZeros(others);
+            others &= others - 1;
+            if (board.legalMove(other | to << 6) != Move.NONE) {
+                ambiguous = true;
+                sameColumn |= (other & 7) == (from & 7);
+                sameRow |= (other >>> 3) == (from >>> 3);
+            }
+        }
+        if (!ambiguous) {
+            return;
+        }
+        // The column is preferred, then the row, then both
+        if (!sameColumn) {
+            san.append((char) ('a' + (from & 7)));
+        } else if (!sameRow) {
+            san.append((char) ('8' - (from >>> 3)));
+        } else {
+            san.append(Move.squareName(from));
+        }
+    }
+
+    /**
+     * Gets the pieces of one type and color that could reach a square, ignoring pins.
+     *
+     * @param board   The position.
+     * @param isWhite The color of the pieces.
+     * @param type    The piece type.
+     * @param to      The destination square.
+     * @param capture Whether a pawn move is a capture rather than a push.
+     * @return The squares of the candidate pieces.
+     */
+    private static long origins(Board board, boolean isWhite, int type, int to, boolean capture) {
+        long own = board.getPieces(isWhite, type);
+        long occupied = board.getOccupied();
+        switch (type) {
+            case Piece.PAWN:
+                if (capture) {
+                    // A pawn captures onto the square if a pawn of the other color there would attack it
+                    return Bitboards.pawnAttacks(!isWhite, to) & own;
+                }
+                int behind = isWhite ? to + 8 : to - 8;
+                if (behind < 0 || behind > 63) {
+                    return 0L;
+                }
+                if ((own & Bitboards.bit(behind)) != 0L) {
+                    return Bitboards.bit(behind);
+                }
+                int start = isWhite ? to + 16 : to - 16;
+                boolean doublePush = isWhite ? to >>> 3 == 4 : to >>> 3 == 3;
+                return doublePush && (occupied & Bitboards.bit(behind)) == 0L ? own & Bitboards.bit(start) : 0L;
+            case Piece.KNIGHT:
+                return Bitboards.knightAttacks(to) & own;
+            case Piece.BISHOP:
+                return Bitboards.bishopAttacks(to, occupied) & own;
+            case Piece.ROOK:
+                return Bitboards.rookAttacks(to, occupied) & own;
+            case Piece.QUEEN:
+                return Bitboards.queenAttacks(to, occupied) & own;
+            default:
+                return Bitboards.kingAttacks(to) & own;
+        }
+    }
+
+    /**
+     * Checks if a token is castling, written with the letter O or the digit 0.
+     *
+     * @param bytes  The buffer holding the token.
+     * @param start  The index of the first byte.
+     * @param length The length of the token without suffixes, 3 or 5.
+     * @return 2 for kingside, -2 for queenside or 0 if the token is not castling.
+     */
+    private static int castlingSide(ByteBuffer bytes, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            byte c = bytes.get(start + i);
+            if (i % 2 == 0 ? c != 'O' && c != '0' : c != '-') {
+                return 0;
+            }
+        }
+        return length == 3 ? 2 : -2;
+    }
+
+    /**
+     * Checks if a byte is a check or mate sign or part of an annotation.
+     *
+     * @param c The byte.
+     * @return true if it can follow a move, false otherwise.
+     */
+    private static boolean isSuffix(byte c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+}
@@ -0,0 +1,66 @@
+package engine;
+
+/**
+ * This class represents the budget of a single search.
+ * A limit of 0 means that limit is not used; with no limits at all the search
+ * runs until it reaches the maximum depth or is stopped.
+ */
+public class SearchLimits {
+    private int depth; // Maximum depth in plies
+    private long nodes; // Maximum number of nodes
+    private long moveTime; // Maximum time in milliseconds
+
+    /**
+     * Gets the maximum depth.
+     *
+     * @return The depth in plies, or 0 for no limit.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets the maximum depth.
+     *
+     * @param depth The depth in plies, or 0 for no limit.
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Gets the maximum number of nodes.
+     *
+     * @return The node budget, or 0 for no limit.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Sets the maximum number of nodes.
+     *
+     * @param nodes The node budget, or 0 for no limit.
+     */
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Gets the maximum search time.
+     *
+     * @return The time in milliseconds, or 0 for no limit.
+     */
+    public long getMoveTime() {
+        return moveTime;
+    }
+
+    /**
+     * Sets the maximum search time.
+     *
+     * @param moveTime The time in milliseconds, or 0 for no limit.
+     */
+    public void setMoveTime(long moveTime) {
+        this.moveTime = moveTime;
+    }
+}
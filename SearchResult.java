@@ -0,0 +1,173 @@
+package engine;
+
+import board.Move;
+
+import java.util.List;
+
+/**
+ * This class represents the outcome of a search: the best move, its score and the
+ * principal variation, which is the line both sides are expected to play.
+ */
+public class SearchResult {
+    private final List<Move> principalVariation;
+    private final int score; // In centipawns for the side to move, or a mate score
+    private final int depth; // Deepest fully searched iteration
+    private final long nodes;
+    private final long timeMillis;
+    private final long[] threadNodes; // Nodes searched by each thread, main thread first
+    private final int[] threadDepths; // Depth completed by each thread, main thread first
+
+    /**
+     * Constructs a SearchResult.
+     *
+     * @param principalVariation The expected line, starting with the best move.
+     * @param score              The score of the line.
+     * @param depth              The depth that was completed.
+     * @param nodes              The number of nodes searched.
+     * @param timeMillis         The time spent in milliseconds.
+     */
+    public SearchResult(List<Move> principalVariation, int score, int depth, long nodes, long timeMillis) {
+        this(principalVariation, score, depth, timeMillis, new long[]{nodes}, new int[]{depth});
+    }
+
+    /**
+     * Constructs a SearchResult for a search run on several threads.
+     *
+     * @param principalVariation The expected line, starting with the best move.
+     * @param score              The score of the line.
+     * @param depth              The depth that was completed.
+     * @param timeMillis         The time spent in milliseconds.
+     * @param threadNodes        The number of nodes searched by each thread.
+     * @param threadDepths       The depth completed by each thread.
+     */
+    public SearchResult(List<Move> principalVariation, int score, int depth, long timeMillis, long[] threadNodes, int[] threadDepths) {
+        long total = 0;
+        for (long n : threadNodes) {
+            total += n;
+        }
+        this.principalVariation = principalVariation;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = total;
+        this.timeMillis = timeMillis;
+        this.threadNodes = threadNodes;
+        this.threadDepths = threadDepths;
+    }
+
+    /**
+     * Gets the best move.
+     *
+     * @return The best move, or null if the side to move has no legal move.
+     */
+    public Move getBestMove() {
+        return principalVariation.isEmpty() ? null : principalVariation.get(0);
+    }
+
+    /**
+     * Gets the principal variation.
+     *
+     * @return The expected line of play.
+     */
+    public List<Move> getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    /**
+     * Gets the score of the best move.
+     *
+     * @return The score in centipawns for the side to move.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the distance to mate when the score is a mate score.
+     *
+     * @return The number of moves until mate, positive if the side to move mates and negative
+     *         if it is mated, or 0 if the score is not a mate score.
+     */
+    public int getMateIn() {
+        if (score >= Searcher.MATE - Searcher.MAX_PLY) {
+            return (Searcher.MATE - score + 1) / 2;
+        }
+        if (score <= -Searcher.MATE + Searcher.MAX_PLY) {
+            return -(Searcher.MATE + score) / 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the depth that was completed.
+     *
+     * @return The depth in plies.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the number of nodes searched.
+     *
+     * @return The node count.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the number of threads that searched.
+     *
+     * @return The thread count.
+     */
+    public int getThreadCount() {
+        return threadNodes.length;
+    }
+
+    /**
+     * Gets the number of nodes one thread searched.
+     *
+     * @param thread The thread index, 0 for the main thread.
+     * @return The node count.
+     */
+    public long getThreadNodes(int thread) {
+        return threadNodes[thread];
+    }
+
+    /**
+     * Gets the depth one thread completed.
+     *
+     * @param thread The thread index, 0 for the main thread.
+     * @return The depth in plies.
+     */
+    public int getThreadDepth(int thread) {
+        return threadDepths[thread];
+    }
+
+    /**
+     * Gets the time spent searching.
+     *
+     * @return The time in milliseconds.
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Gets the search speed.
+     *
+     * @return The number of nodes searched per second.
+     */
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, timeMillis);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder pv = new StringBuilder();
+        for (Move move : principalVariation) {
+            pv.append(' ').append(move);
+        }
+        return "depth " + depth + " score " + score + " nodes " + nodes + " nps " + getNodesPerSecond() + " pv" + pv;
+    }
+}
@@ -0,0 +1,514 @@
+package engine;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+import tablebase.Tablebase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class runs an iterative deepening negamax alpha-beta search over one board.
+ * The board is searched in place with makeMove/unmakeMove and is left unchanged.
+ * Several searchers can run at once on copies of the same board, sharing one
+ * transposition table; searcher 0 is the main one and the others are helpers.
+ */
+class Searcher implements Runnable {
+    static final int INFINITY = 32000;
+    static final int MATE = 31000; // Score of being mated now; mate in n plies scores MATE - n
+    static final int MAX_PLY = 128;
+
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final int CHECK_INTERVAL = 1023; // Nodes between budget checks, minus one
+    private static final int MAX_HISTORY = 1 << 20;
+
+    private final Engine engine;
+    private final int id; // 0 for the main searcher, 1 and up for helpers
+    private final Board board;
+    private final TranspositionTable table;
+    private final PawnTable pawnTable; // Owned by this searcher's thread alone
+    private final SearchLimits limits;
+    private final Tablebase tablebase; // Ends the search in the endgames it covers, or null
+    private final long startTime;
+    private final long deadline; // System.nanoTime() at which to stop, or Long.MAX_VALUE
+
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1]; // Packed moves of the line found at each ply
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1]; // One reusable move buffer per ply
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY + 1]; // One reusable move picker per ply
+    private final int[][] killers = new int[MAX_PLY + 1][2]; // The last two quiet moves that caused a cutoff at each ply
+    private final int[] counterMoves = new int[12 * 64]; // Quiet refutation of each piece index arriving on each square
+    private final int[] history = new int[2 << 12]; // Cutoff score of each quiet move, by color, from and to
+    private final int[] playedMoves = new int[MAX_PLY + 1]; // The move being searched at each ply
+    private long cutoffs; // Nodes that failed high
+    private long firstMoveCutoffs; // Nodes that failed high on the first move searched
+    private long nodes;
+    private boolean stoppable; // The main searcher always completes its first iteration so there is a move to play
+    private volatile int completedDepth;
+    private SearchResult result;
+
+    /**
+     * Constructs a Searcher.
+     *
+     * @param engine    The engine that owns the stop flag.
+     * @param id        0 for the main searcher, 1 and up for helpers.
+     * @param board     The board to search.
+     * @param table     The shared transposition table.
+     * @param pawnTable The pawn structure cache of this searcher's thread.
+     * @param limits    The search budget.
+     */
+    Searcher(Engine engine, int id, Board board, TranspositionTable table, PawnTable pawnTable, SearchLimits limits) {
+        this.engine = engine;
+        this.id = id;
+        this.stoppable = id != 0;
+        this.board = board;
+        this.table = table;
+        this.pawnTable = pawnTable;
+        this.limits = limits;
+        this.tablebase = engine.getTablebase();
+        this.startTime = System.nanoTime();
+        this.deadline = limits.getMoveTime() > 0 ? startTime + limits.getMoveTime() * 1_000_000L : Long.MAX_VALUE;
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+            pickers[i] = new MovePicker();
+        }
+    }
+
+    /**
+     * Runs the search and keeps its result for getResult().
+     */
+    @Override
+    public void run() {
+        result = iterate();
+    }
+
+    /**
+     * Searches with increasing depth until the budget runs out or the maximum depth is reached.
+     * Odd-numbered helpers start one ply deeper, so the threads spread over two depths
+     * and fill the shared table with different parts of the tree.
+     *
+     * @return The result of the deepest completed iteration.
+     */
+    SearchResult iterate() {
+        int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY) : MAX_PLY;
+        List<Move> bestLine = new ArrayList<>();
+        int bestScore = 0;
+        for (int depth = 1 + (id & 1); depth <= maxDepth; depth++) {
+            int score = aspirationSearch(depth, bestScore);
+            if (isStopped()) {
+                break;
+            }
+            bestScore = score;
+            completedDepth = depth;
+            bestLine = principalVariation();
+            stoppable = true;
+            if (id == 0) {
+                engine.reportIteration(bestLine, score, depth, startTime);
+            }
+            if (bestLine.isEmpty() || Math.abs(score) >= MATE - depth) {
+                break; // No legal move, or a forced mate was found within the full-width search
+            }
+        }
+        return new SearchResult(bestLine, bestScore, completedDepth, nodes, (System.nanoTime() - startTime) / 1_000_000L);
+    }
+
+    /**
+     * Searches the root with a narrow window around the previous score, widening it on failure.
+     *
+     * @param depth         The depth to search.
+     * @param previousScore The score of the previous iteration.
+     * @return The score of the root.
+     */
+    private int aspirationSearch(int depth, int previousScore) {
+        if (depth < 4 || Math.abs(previousScore) >= MATE - MAX_PLY) {
+            return search(depth, 0, -INFINITY, INFINITY);
+        }
+        int delta = ASPIRATION_WINDOW;
+        int alpha = previousScore - delta;
+        int beta = previousScore + delta;
+        while (true) {
+            int score = search(depth, 0, alpha, beta);
+            if (isStopped()) {
+                return score;
+            }
+            if (score <= alpha) {
+                alpha = Math.max(-INFINITY, score - delta);
+            } else if (score >= beta) {
+                beta = Math.min(INFINITY, score + delta);
+            } else {
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    /**
+     * Searches a position with negamax alpha-beta.
+     *
+     * @param depth The remaining depth.
+     * @param ply   The distance from the root.
+     * @param alpha The lower bound of the window.
+     * @param beta  The upper bound of the window.
+     * @return The score for the side to move.
+     */
+    private int search(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        nodes++;
+        if ((nodes & CHECK_INTERVAL) == 0) {
+            checkBudget();
+        }
+        if (isStopped()) {
+            return 0;
+        }
+        if (ply > 0 && (board.isRepetition() || board.isFiftyMoveRule())) {
+            return 0;
+        }
+        if (ply > 0 && tablebase != null) {
+            int entry = tablebase.probe(board);
+            if (entry != Tablebase.NOT_FOUND) {
+                return tablebaseScore(entry, ply);
+            }
+        }
+        if (depth <= 0 || ply >= MAX_PLY) {
+            return quiesce(ply, alpha, beta);
+        }
+
+        long key = board.getHash();
+        long entry = table.probe(key);
+        int hashMove = TranspositionTable.move(entry);
+        if (entry != 0L && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+            int score = scoreFromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.BOUND_EXACT
+                    || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                    || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+
+        boolean isWhite = board.isWhiteToMove();
+        int counterIndex = ply > 0 ? counterIndex(playedMoves[ply - 1], !isWhite) : -1;
+        MovePicker picker = pickers[ply];
+        picker.reset(board, hashMove, killers[ply][0], killers[ply][1],
+                counterIndex >= 0 ? counterMoves[counterIndex] : Move.NONE, history);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = 0;
+        int moveCount = 0;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            moveCount++;
+            playedMoves[ply] = move;
+            board.makeMove(move);
+            int score = -search(depth - 1, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (isStopped()) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move & 0xFFFF;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, bestMove);
+                    if (alpha >= beta) {
+                        recordCutoff(move, depth, ply, moveCount, counterIndex);
+                        break;
+                    }
+                }
+            }
+        }
+        if (moveCount == 0) {
+            return board.isInCheck() ? -MATE + ply : 0;
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        table.store(key, bestMove, scoreToTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Searches only captures and promotions below the horizon, so that positions are not
+     * scored in the middle of an exchange. The side to move may stand on the static
+     * evaluation instead of capturing, unless it is in check, in which case every move is
+     * searched. Captures that lose material according to the static exchange evaluator
+     * are skipped.
+     *
+     * @param ply   The distance from the root.
+     * @param alpha The lower bound of the window.
+     * @param beta  The upper bound of the window.
+     * @return The score for the side to move.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (ply > 0) {
+            nodes++;
+            if ((nodes & CHECK_INTERVAL) == 0) {
+                checkBudget();
+            }
+        }
+        if (isStopped()) {
+            return 0;
+        }
+        boolean inCheck = board.isInCheck();
+        if (ply >= MAX_PLY) {
+            return inCheck ? 0 : Evaluator.evaluate(board, pawnTable);
+        }
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            bestScore = Evaluator.evaluate(board, pawnTable);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            alpha = Math.max(alpha, bestScore);
+        }
+
+        MoveList moves = moveLists[ply];
+        if (inCheck) {
+            board.generateLegalMoves(board.isWhiteToMove(), moves);
+            if (moves.isEmpty()) {
+                return -MATE + ply;
+            }
+        } else {
+            board.generateCaptures(moves);
+        }
+        // Keep the tactical moves that do not lose material, ordered by most valuable victim then least valuable attacker
+        int count = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (inCheck || Move.promotion(move) != Move.NO_PROMOTION || board.see(move) >= 0) {
+                moves.swap(count++, i);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int best = i;
+            for (int j = i + 1; j < count; j++) {
+                if (MovePicker.captureScore(moves.get(j)) > MovePicker.captureScore(moves.get(best))) {
+                    best = j;
+                }
+            }
+            moves.swap(i, best);
+            int move = moves.get(i);
+            board.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (isStopped()) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move & 0xFFFF);
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * Updates the move ordering statistics after a move caused a cutoff. A quiet move becomes
+     * a killer of its ply, the counter move to the opponent's previous move, and gains history
+     * in proportion to the square of the depth, since cutoffs near the root save the most work.
+     *
+     * @param move         The encoded move that failed high.
+     * @param depth        The remaining depth of the node.
+     * @param ply          The distance from the root.
+     * @param moveCount    The number of moves searched at the node, including this one.
+     * @param counterIndex The counter move slot of the opponent's previous move, or -1 at the root.
+     */
+    private void recordCutoff(int move, int depth, int ply, int moveCount, int counterIndex) {
+        cutoffs++;
+        if (moveCount == 1) {
+            firstMoveCutoffs++;
+        }
+        if (Move.isCapture(move) || Move.promotion(move) != Move.NO_PROMOTION) {
+            return;
+        }
+        int packed = move & 0xFFFF;
+        if (killers[ply][0] != packed) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = packed;
+        }
+        if (counterIndex >= 0) {
+            counterMoves[counterIndex] = packed;
+        }
+        int slot = (board.isWhiteToMove() ? 0 : 1 << 12) | (move & 0xFFF);
+        history[slot] += depth * depth;
+        if (history[slot] > MAX_HISTORY) {
+            // Halve every score so old cutoffs fade and the scores stay far from overflow
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Gets the counter move slot of a move: the piece that moved and the square it reached.
+     *
+     * @param move    The encoded move.
+     * @param isWhite The color that made the move.
+     * @return The index into the counter move table.
+     */
+    private static int counterIndex(int move, boolean isWhite) {
+        return ((isWhite ? 0 : 6) + Move.piece(move)) * 64 + Move.toSquare(move);
+    }
+
+    /**
+     * Records a new best move at a ply followed by the line found below it.
+     *
+     * @param ply  The ply of the move.
+     * @param move The packed move.
+     */
+    private void updatePrincipalVariation(int ply, int move) {
+        pvTable[ply][ply] = move;
+        for (int i = ply + 1; i < pvLength[ply + 1]; i++) {
+            pvTable[ply][i] = pvTable[ply + 1][i];
+        }
+        pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+    }
+
+    /**
+     * Gets the principal variation found by the last root search. The collected line ends
+     * where a node was cut off by the transposition table, so it is carried on with the
+     * table's best moves for as long as they are legal and do not repeat a position.
+     *
+     * @return The line of moves from the root.
+     */
+    private List<Move> principalVariation() {
+        List<Move> line = new ArrayList<>();
+        int played = 0;
+        for (int i = 0; i < pvLength[0]; i++) {
+            int move = board.legalMove(pvTable[0][i]);
+            if (move == Move.NONE) {
+                break;
+            }
+            line.add(Move.unpack(pvTable[0][i]));
+            board.makeMove(move);
+            played++;
+        }
+        while (line.size() < MAX_PLY) {
+            int move = board.legalMove(TranspositionTable.move(table.probe(board.getHash())));
+            if (move == Move.NONE) {
+                break;
+            }
+            line.add(Move.unpack(move & 0xFFFF));
+            board.makeMove(move);
+            played++;
+            if (board.isRepetition()) {
+                break; // The table would lead round the same cycle of moves
+            }
+        }
+        for (; played > 0; played--) {
+            board.unmakeMove();
+        }
+        return line;
+    }
+
+    /**
+     * Checks whether the search should unwind, which is never the case during the first iteration.
+     *
+     * @return true if the search was stopped, false otherwise.
+     */
+    private boolean isStopped() {
+        return stoppable && engine.isStopped();
+    }
+
+    /**
+     * Stops the search once the node or time budget is spent.
+     */
+    private void checkBudget() {
+        // Only the main searcher counts nodes against the budget, so the budget is per thread
+        if ((id == 0 && limits.getNodes() > 0 && nodes >= limits.getNodes()) || System.nanoTime() >= deadline) {
+            engine.stop();
+        }
+    }
+
+    /**
+     * Gets the number of nodes that failed high.
+     *
+     * @return The cutoff count.
+     */
+    long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Gets the number of nodes that failed high on the first move searched.
+     *
+     * @return The first-move cutoff count.
+     */
+    long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * Gets the number of nodes searched so far.
+     *
+     * @return The node count.
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the deepest iteration completed so far.
+     *
+     * @return The depth in plies.
+     */
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Gets the result of run().
+     *
+     * @return The result, or null if the search has not finished.
+     */
+    SearchResult getResult() {
+        return result;
+    }
+
+    /**
+     * Converts a tablebase entry to a search score, a win or loss scoring as the mate it leads to.
+     *
+     * @param entry The entry returned by Tablebase.probe.
+     * @param ply   The distance from the root.
+     * @return The score for the side to move.
+     */
+    static int tablebaseScore(int entry, int ply) {
+        int result = Tablebase.result(entry);
+        int moves = Tablebase.movesToMate(entry);
+        if (result == Tablebase.WIN) {
+            return MATE - (ply + 2 * moves - 1);
+        }
+        return result == Tablebase.LOSS ? -MATE + ply + 2 * moves : 0;
+    }
+
+    // Mate scores are stored relative to the stored position rather than the root
+    private static int scoreToTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,76 @@
+package engine;
+
+import board.Board;
+import board.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class measures how the engine's time to reach a fixed depth scales with the
+ * number of search threads. Run it with the highest thread count and the depth to
+ * reach, for example "java engine.SmpBenchmark 32 10".
+ */
+public class SmpBenchmark {
+    // Opening lines played from the starting position to get a spread of test positions
+    private static final String[][] LINES = {
+        {},
+        {"e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6"},
+        {"d2d4", "g8f6", "c2c4", "e7e6", "b1c3", "f8b4"},
+        {"e2e4", "c7c5", "g1f3", "d7d6", "d2d4", "c5d4", "f3d4", "g8f6", "b1c3", "a7a6"},
+    };
+
+    /**
+     * Runs the benchmark with 1, 2, 4 and so on up to the given number of threads.
+     *
+     * @param args The maximum thread count and the depth, both optional.
+     */
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        List<Board> positions = new ArrayList<>();
+        for (String[] line : LINES) {
+            positions.add(play(line));
+        }
+
+        long baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(threads * 2, maxThreads) : threads + 1) {
+            Engine engine = new Engine(64);
+            engine.setThreads(threads);
+            SearchLimits limits = new SearchLimits();
+            limits.setDepth(depth);
+            long totalTime = 0;
+            long totalNodes = 0;
+            for (Board position : positions) {
+                engine.getTable().clear();
+                SearchResult result = engine.search(position, limits);
+                totalTime += result.getTimeMillis();
+                totalNodes += result.getNodes();
+            }
+            if (threads == 1) {
+                baseline = totalTime;
+            }
+            System.out.printf("threads %2d  time %7d ms  nodes %11d  nps %10d  speedup %.2f%n", threads, totalTime,
+                    totalNodes, totalNodes * 1000 / Math.max(1, totalTime), (double) baseline / Math.max(1, totalTime));
+        }
+    }
+
+    /**
+     * Plays a line of moves in coordinate notation from the starting position.
+     *
+     * @param line The moves to play.
+     * @return The resulting board.
+     */
+    private static Board play(String[] line) {
+        Board board = new Board();
+        for (String text : line) {
+            for (Move move : board.generateLegalMoves(board.isWhiteToMove())) {
+                if (move.toString().equals(text)) {
+                    board.makeMove(move);
+                    break;
+                }
+            }
+        }
+        return board;
+    }
+}
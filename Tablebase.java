@@ -0,0 +1,357 @@
+package tablebase;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+import pieces.Piece;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class represents a set of endgame tablebases: for every position of a few pieces
+ * against a bare king, whether the side to move wins, draws or loses, and in how many moves
+ * the game ends in mate with best play.
+ *
+ * Each table is a file named after its material, such as KQK.tb or KBNK.tb, written by
+ * TablebaseGenerator. It holds one byte per position: the result in the top two bits
+ * (DRAW, WIN, LOSS or 3 for an impossible position) and the moves to mate in the low six.
+ * Positions are indexed with the stronger side as white, and the stronger king is moved
+ * into a canonical region by mirroring and, without pawns, by flipping along the diagonal,
+ * so a table stores each position once up to symmetry.
+ *
+ * The files are memory-mapped and only read, so any number of threads can probe them at
+ * once without locks, and a probe does not allocate.
+ */
+public class Tablebase {
+    public static final int MAX_PIECES = 4; // Kings included
+    public static final int NOT_FOUND = -1; // Returned by probe when no table covers the position
+    public static final int DRAW = 0;
+    public static final int WIN = 1; // For the side to move
+    public static final int LOSS = 2;
+    static final int ILLEGAL = 3; // Result of an index that is not a legal position
+
+    static final String EXTENSION = ".tb";
+    private static final String PIECE_LETTERS = "PNBRQK"; // Indexed by piece type
+
+    // The squares the stronger king is moved onto: a1-d1-d4 without pawns, files a-d with pawns
+    private static final int[] KING_SLOTS = new int[64];
+    private static final int[] PAWN_KING_SLOTS = new int[64];
+    static final int[] SLOT_SQUARES = new int[10];
+    static final int[] PAWN_SLOT_SQUARES = new int[32];
+
+    static {
+        int slots = 0;
+        int pawnSlots = 0;
+        for (int square = 0; square < 64; square++) {
+            int column = square & 7;
+            int rank = 7 - (square >>> 3); // 0 for the first rank
+            KING_SLOTS[square] = -1;
+            PAWN_KING_SLOTS[square] = -1;
+            if (column <= 3 && rank <= 3 && rank <= column) {
+                SLOT_SQUARES[slots] = square;
+                KING_SLOTS[square] = slots++;
+            }
+            if (column <= 3) {
+                PAWN_SLOT_SQUARES[pawnSlots] = square;
+                PAWN_KING_SLOTS[square] = pawnSlots++;
+            }
+        }
+    }
+
+    private final MappedByteBuffer[] tables = new MappedByteBuffer[36]; // By material code
+    private int tableCount;
+
+    /**
+     * Opens every table file in a directory.
+     *
+     * @param directory The directory holding the .tb files.
+     * @throws IOException if the directory or a table cannot be read, or a table has the wrong size.
+     */
+    public Tablebase(Path directory) throws IOException {
+        try (var files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int[] types = parseMaterial(name.substring(0, name.length() - EXTENSION.length()));
+                if (types == null) {
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    if (channel.size() != size(types)) {
+                        throw new IOException("Tablebase " + file + " has " + channel.size() + " bytes instead of " + size(types));
+                    }
+                    tables[materialCode(types)] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    tableCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of tables that were opened.
+     *
+     * @return The table count.
+     */
+    public int getTableCount() {
+        return tableCount;
+    }
+
+    /**
+     * Looks up the current position of a board.
+     *
+     * @param board The position.
+     * @return The entry, to read with result and movesToMate, or NOT_FOUND if the position
+     *         has more pieces, castling rights, or material without an opened table.
+     */
+    public int probe(Board board) {
+        long occupied = board.getOccupied();
+        if (Long.bitCount(occupied) > MAX_PIECES || board.getCastlingRights() != 0) {
+            return NOT_FOUND;
+        }
+        boolean strongIsWhite = Long.bitCount(board.getPieces(true)) > 1;
+        if (strongIsWhite && Long.bitCount(board.getPieces(false)) > 1) {
+            return NOT_FOUND; // Both sides have more than a king
+        }
+        if (Long.bitCount(occupied) == 2) {
+            return DRAW << 6; // Two bare kings
+        }
+        // Black as the stronger side is looked up with the board turned upside down
+        int flip = strongIsWhite ? 0 : 56;
+        int type1 = -1;
+        int type2 = -1;
+        int square1 = 0;
+        int square2 = 0;
+        for (int type = Piece.QUEEN; type >= Piece.PAWN; type--) {
+            long pieces = board.getPieces(strongIsWhite, type);
+            while (pieces != 0L) {
+                int square = Long.numberOfTrailingZeros(pieces) ^ flip;
+                pieces &= pieces - 1;
+                if (type1 < 0) {
+                    type1 = type;
+                    square1 = square;
+                } else {
+                    type2 = type;
+                    square2 = square;
+                }
+            }
+        }
+        MappedByteBuffer table = tables[materialCode(type1, type2)];
+        if (table == null) {
+            return NOT_FOUND;
+        }
+        int sideToMove = board.isWhiteToMove() == strongIsWhite ? 0 : 1;
+        boolean pawns = type1 == Piece.PAWN || type2 == Piece.PAWN;
+        int index = index(pawns, type2 >= 0 ? 2 : 1, sideToMove, board.getKingSquare(strongIsWhite) ^ flip,
+                board.getKingSquare(!strongIsWhite) ^ flip, square1, square2);
+        return table.get(index) & 0xFF;
+    }
+
+    /**
+     * Finds the move that keeps the best result with the fastest mate, or the slowest
+     * defeat, according to the tables.
+     *
+     * @param board The position, which is left unchanged.
+     * @param moves A list to generate the legal moves into.
+     * @return The encoded move, or Move.NONE if the position or one of its moves is not covered.
+     */
+    public int bestMove(Board board, MoveList moves) {
+        if (probe(board) == NOT_FOUND) {
+            return Move.NONE;
+        }
+        board.generateLegalMoves(board.isWhiteToMove(), moves);
+        int best = Move.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            int entry = board.isCheckmate(board.isWhiteToMove()) ? LOSS << 6 : probe(board);
+            board.unmakeMove();
+            if (entry == NOT_FOUND) {
+                return Move.NONE;
+            }
+            // The opponent's loss ranks first, the quicker the better, then draws, then the slowest of its wins
+            int rank;
+            if (result(entry) == LOSS) {
+                rank = 1000 - movesToMate(entry);
+            } else if (result(entry) == DRAW) {
+                rank = 0;
+            } else {
+                rank = movesToMate(entry) - 1000;
+            }
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = move;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the result stored in an entry.
+     *
+     * @param entry An entry returned by probe.
+     * @return WIN, DRAW or LOSS for the side to move.
+     */
+    public static int result(int entry) {
+        return entry >>> 6;
+    }
+
+    /**
+     * Gets the distance to mate stored in an entry.
+     *
+     * @param entry An entry returned by probe.
+     * @return The number of moves of the winning side until mate, or 0 for a draw.
+     */
+    public static int movesToMate(int entry) {
+        return entry & 63;
+    }
+
+    /**
+     * Reads a material name such as "KBNK" into the stronger side's piece types.
+     *
+     * @param material The name: a king, one or two pieces from strongest to weakest, and the bare king.
+     * @return The piece types, or null if the name does not describe a supported table.
+     */
+    public static int[] parseMaterial(String material) {
+        int length = material.length();
+        if (length < 3 || length > MAX_PIECES + 1 || material.charAt(0) != 'K' || material.charAt(length - 1) != 'K') {
+            return null;
+        }
+        int[] types = new int[length - 2];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = PIECE_LETTERS.indexOf(material.charAt(i + 1));
+            if (types[i] < Piece.PAWN || types[i] == Piece.KING || (i > 0 && types[i] > types[i - 1])) {
+                return null;
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Writes the stronger side's piece types as a material name.
+     *
+     * @param types The piece types, strongest first.
+     * @return The name, for example "KRK".
+     */
+    public static String materialName(int[] types) {
+        StringBuilder name = new StringBuilder("K");
+        for (int type : types) {
+            name.append(PIECE_LETTERS.charAt(type));
+        }
+        return name.append('K').toString();
+    }
+
+    /**
+     * Gets the number of positions in a table.
+     *
+     * @param types The stronger side's piece types.
+     * @return The number of entries.
+     */
+    static int size(int[] types) {
+        int slots = hasPawns(types) ? PAWN_SLOT_SQUARES.length : SLOT_SQUARES.length;
+        return 2 * slots * 64 << 6 * types.length;
+    }
+
+    /**
+     * Checks if some of the piece types are pawns.
+     *
+     * @param types The piece types.
+     * @return true if there is a pawn, false otherwise.
+     */
+    static boolean hasPawns(int[] types) {
+        for (int type : types) {
+            if (type == Piece.PAWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the slot of a table in the table array.
+     *
+     * @param types The piece types, strongest first.
+     * @return The material code.
+     */
+    static int materialCode(int[] types) {
+        return materialCode(types[0], types.length > 1 ? types[1] : -1);
+    }
+
+    /**
+     * Gets the slot of a table in the table array.
+     *
+     * @param type1 The stronger piece type.
+     * @param type2 The weaker piece type, or -1 for a single piece.
+     * @return The material code.
+     */
+    static int materialCode(int type1, int type2) {
+        return (type1 + 1) * 6 + type2 + 1;
+    }
+
+    /**
+     * Computes the index of a position in its table, first moving the stronger king into
+     * its canonical region by mirroring the whole board.
+     *
+     * @param pawns       Whether the table has pawns, which rules out all but the left-right mirror.
+     * @param pieces      The number of pieces besides the kings, 1 or 2.
+     * @param sideToMove  0 when the stronger side is to move, 1 otherwise.
+     * @param strongKing  The square of the stronger king, with the stronger side as white.
+     * @param weakKing    The square of the bare king.
+     * @param square1     The square of the first piece.
+     * @param square2     The square of the second piece, ignored for a single piece.
+     * @return The index.
+     */
+    static int index(boolean pawns, int pieces, int sideToMove, int strongKing, int weakKing, int square1, int square2) {
+        int symmetry = symmetry(pawns, strongKing);
+        int slot = pawns ? PAWN_KING_SLOTS[transform(strongKing, symmetry)] : KING_SLOTS[transform(strongKing, symmetry)];
+        int index = ((sideToMove * (pawns ? PAWN_SLOT_SQUARES.length : SLOT_SQUARES.length) + slot) << 6
+                | transform(weakKing, symmetry)) << 6 | transform(square1, symmetry);
+        return pieces == 2 ? index << 6 | transform(square2, symmetry) : index;
+    }
+
+    /**
+     * Finds the mirroring that moves a king into its canonical region.
+     *
+     * @param pawns Whether only the left-right mirror may be used.
+     * @param king  The square of the king.
+     * @return A bit set: 1 mirrors the columns, 2 the rows, 4 flips along the a1-h8 diagonal.
+     */
+    static int symmetry(boolean pawns, int king) {
+        int symmetry = (king & 7) > 3 ? 1 : 0;
+        if (pawns) {
+            return symmetry;
+        }
+        if ((king >>> 3) < 4) {
+            symmetry |= 2;
+        }
+        int square = transform(king, symmetry);
+        if (7 - (square >>> 3) > (square & 7)) {
+            symmetry |= 4; // Above the diagonal
+        }
+        return symmetry;
+    }
+
+    /**
+     * Applies a mirroring to a square.
+     *
+     * @param square   The square.
+     * @param symmetry The bit set returned by symmetry.
+     * @return The mirrored square.
+     */
+    static int transform(int square, int symmetry) {
+        if ((symmetry & 1) != 0) {
+            square ^= 7;
+        }
+        if ((symmetry & 2) != 0) {
+            square ^= 56;
+        }
+        if ((symmetry & 4) != 0) {
+            square = (7 - (square & 7)) << 3 | (7 - (square >>> 3));
+        }
+        return square;
+    }
+}
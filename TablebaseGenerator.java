@@ -0,0 +1,565 @@
+package tablebase;
+
+import board.Bitboards;
+import pieces.Piece;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class generates the endgame tables read by Tablebase, for a king and one or two
+ * pieces against a bare king.
+ *
+ * Every index of a table stands for one position, so the table is simply an array with a
+ * byte per index. Generation works backwards from the end of the game in passes: the first
+ * pass marks impossible positions, mates and stalemates, and pass n marks the positions
+ * decided in exactly n plies. On odd passes a position of the stronger side wins if one of
+ * its moves reaches a loss found in an earlier pass; on even passes a position of the bare
+ * king loses if every one of its moves reaches such a win. A pass only writes positions of
+ * one side to move and only reads those of the other, so the threads splitting a pass
+ * between them never touch the same entry. Whatever is still undecided when the passes stop
+ * changing anything is a draw.
+ *
+ * Captures and promotions leave the table, so the tables they lead to are generated first.
+ */
+public class TablebaseGenerator {
+    private static final int CHUNK = 1 << 14; // Indexes a thread claims at a time
+
+    // Values while generating: 0 undecided, 1-127 a win in that many plies, 128 plus n a loss in n plies
+    private static final int UNKNOWN = 0;
+    private static final int LOSS = 128;
+    private static final int DRAW = 254;
+    private static final int ILLEGAL = 255;
+
+    private static final int[] PROMOTIONS = {Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN};
+
+    private final int threads;
+    private final Map<String, byte[]> tables = new LinkedHashMap<>(); // Finished tables by material name
+
+    /**
+     * Constructs a TablebaseGenerator.
+     *
+     * @param threads The number of threads each pass is split between.
+     */
+    public TablebaseGenerator(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Generates a table, along with the tables its captures and promotions lead to.
+     * Tables that were generated before are reused.
+     *
+     * @param types The stronger side's piece types, strongest first.
+     * @return The table in the format of the table files.
+     */
+    public byte[] generate(int[] types) {
+        String name = Tablebase.materialName(types);
+        byte[] table = tables.get(name);
+        if (table == null) {
+            table = new Generation(types).run();
+            tables.put(name, table);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the tables generated so far.
+     *
+     * @return The tables by material name, in the order they were finished.
+     */
+    public Map<String, byte[]> getTables() {
+        return tables;
+    }
+
+    /**
+     * Writes every table generated so far to a directory.
+     *
+     * @param directory The directory, which must exist.
+     * @throws IOException if a file cannot be written.
+     */
+    public void write(Path directory) throws IOException {
+        for (Map.Entry<String, byte[]> table : tables.entrySet()) {
+            Files.write(directory.resolve(table.getKey() + Tablebase.EXTENSION), table.getValue());
+        }
+    }
+
+    /**
+     * This class holds the state of one table while it is generated.
+     */
+    private class Generation {
+        private final int[] types;
+        private final int pieces; // Pieces besides the kings
+        private final boolean pawns;
+        private final int slots; // Squares of the stronger king
+        private final byte[] values;
+        private final byte[][] captured; // The table left after each piece is taken, or null for two kings
+        private final int[][] capturedTypes;
+        private final byte[][] promoted; // The table after a pawn promotes, by piece and promotion
+        private final int[][] promotedTypes;
+        private final AtomicInteger next = new AtomicInteger(); // Next chunk of the current pass
+        private final AtomicLong changed = new AtomicLong(); // Entries decided in the current pass
+
+        /**
+         * Constructs a Generation, generating the tables it depends on.
+         *
+         * @param types The stronger side's piece types, strongest first.
+         */
+        Generation(int[] types) {
+            this.types = types;
+            this.pieces = types.length;
+            this.pawns = Tablebase.hasPawns(types);
+            this.slots = pawns ? Tablebase.PAWN_SLOT_SQUARES.length : Tablebase.SLOT_SQUARES.length;
+            this.values = new byte[Tablebase.size(types)];
+            this.captured = new byte[pieces][];
+            this.capturedTypes = new int[pieces][];
+            this.promoted = new byte[pieces * PROMOTIONS.length][];
+            this.promotedTypes = new int[pieces * PROMOTIONS.length][];
+            for (int i = 0; i < pieces; i++) {
+                if (pieces > 1) {
+                    capturedTypes[i] = new int[]{types[1 - i]};
+                    captured[i] = generate(capturedTypes[i]);
+                }
+                if (types[i] == Piece.PAWN) {
+                    for (int j = 0; j < PROMOTIONS.length; j++) {
+                        int[] promotion = types.clone();
+                        promotion[i] = PROMOTIONS[j];
+                        sortDescending(promotion);
+                        promotedTypes[i * PROMOTIONS.length + j] = promotion;
+                        promoted[i * PROMOTIONS.length + j] = generate(promotion);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs the passes and encodes the result.
+         *
+         * @return The finished table.
+         */
+        byte[] run() {
+            // Decisions that leave the table can take as long as the longest mate of the tables they reach
+            int longestExit = 0;
+            for (byte[] table : captured) {
+                longestExit = Math.max(longestExit, longestPlies(table));
+            }
+            for (byte[] table : promoted) {
+                longestExit = Math.max(longestExit, longestPlies(table));
+            }
+            runPass(0);
+            int quietPasses = 0;
+            for (int pass = 1; pass < LOSS - 2 && (quietPasses < 2 || pass <= longestExit + 1); pass++) {
+                changed.set(0);
+                runPass(pass);
+                quietPasses = changed.get() == 0 ? quietPasses + 1 : 0;
+            }
+            byte[] table = new byte[values.length];
+            for (int i = 0; i < values.length; i++) {
+                table[i] = (byte) encode(values[i] & 0xFF);
+            }
+            return table;
+        }
+
+        /**
+         * Runs one pass, split between the threads in chunks of indexes.
+         *
+         * @param pass The pass number, which is the number of plies it decides.
+         */
+        private void runPass(int pass) {
+            next.set(0);
+            Runnable worker = () -> {
+                int start;
+                while ((start = next.getAndAdd(CHUNK)) < values.length) {
+                    int end = Math.min(start + CHUNK, values.length);
+                    for (int index = start; index < end; index++) {
+                        visit(index, pass);
+                    }
+                }
+            };
+            Thread[] helpers = new Thread[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new Thread(worker, "tablebase-" + (i + 1));
+                helpers[i].start();
+            }
+            worker.run();
+            for (Thread helper : helpers) {
+                try {
+                    helper.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Tablebase generation was interrupted", e);
+                }
+            }
+        }
+
+        /**
+         * Decides one entry if it can be decided in this pass.
+         *
+         * @param index The index of the entry.
+         * @param pass  The pass number.
+         */
+        private void visit(int index, int pass) {
+            if (values[index] != UNKNOWN) {
+                return;
+            }
+            int shift = 6 * pieces;
+            int square1 = pieces == 2 ? index >>> 6 & 63 : index & 63;
+            int square2 = pieces == 2 ? index & 63 : -1;
+            int weakKing = index >>> shift & 63;
+            int kings = index >>> shift + 6;
+            int sideToMove = kings / slots;
+            int strongKing = pawns ? Tablebase.PAWN_SLOT_SQUARES[kings % slots] : Tablebase.SLOT_SQUARES[kings % slots];
+            boolean strongToMove = sideToMove == 0;
+            if (pass == 0) {
+                values[index] = (byte) classify(strongToMove, strongKing, weakKing, square1, square2);
+            } else if (strongToMove && (pass & 1) == 1) {
+                if (strongWins(pass, strongKing, weakKing, square1, square2)) {
+                    values[index] = (byte) pass;
+                    changed.incrementAndGet();
+                }
+            } else if (!strongToMove && (pass & 1) == 0) {
+                if (weakLoses(pass, strongKing, weakKing, square1, square2)) {
+                    values[index] = (byte) (LOSS + pass);
+                    changed.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Marks impossible positions, mates and stalemates.
+         *
+         * @return The value of the position, or UNKNOWN.
+         */
+        private int classify(boolean strongToMove, int strongKing, int weakKing, int square1, int square2) {
+            long occupied = Bitboards.bit(strongKing) | Bitboards.bit(weakKing) | Bitboards.bit(square1);
+            if (pieces == 2) {
+                occupied |= Bitboards.bit(square2);
+            }
+            if (Long.bitCount(occupied) != pieces + 2 || (Bitboards.kingAttacks(strongKing) & Bitboards.bit(weakKing)) != 0L
+                    || isMisplacedPawn(0, square1) || (pieces == 2 && isMisplacedPawn(1, square2))) {
+                return ILLEGAL;
+            }
+            boolean check = isAttacked(weakKing, occupied, square1, square2, -1);
+            if (strongToMove) {
+                return check ? ILLEGAL : hasStrongMove(strongKing, weakKing, occupied, square1, square2) ? UNKNOWN : DRAW;
+            }
+            if (hasWeakMove(strongKing, weakKing, occupied, square1, square2)) {
+                return UNKNOWN;
+            }
+            return check ? LOSS : DRAW;
+        }
+
+        /**
+         * Checks if the stronger side, to move, can reach a loss of the bare king decided in an earlier pass.
+         *
+         * @return true if it can.
+         */
+        private boolean strongWins(int pass, int strongKing, int weakKing, int square1, int square2) {
+            long occupied = Bitboards.bit(strongKing) | Bitboards.bit(weakKing) | Bitboards.bit(square1);
+            if (pieces == 2) {
+                occupied |= Bitboards.bit(square2);
+            }
+            long kingMoves = Bitboards.kingAttacks(strongKing) & ~occupied & ~Bitboards.kingAttacks(weakKing);
+            while (kingMoves != 0L) {
+                int to = Long.numberOfTrailingZeros(kingMoves);
+                kingMoves &= kingMoves - 1;
+                if (isLoss(values[Tablebase.index(pawns, pieces, 1, to, weakKing, square1, square2)] & 0xFF, pass)) {
+                    return true;
+                }
+            }
+            for (int piece = 0; piece < pieces; piece++) {
+                int from = piece == 0 ? square1 : square2;
+                int other = piece == 0 ? square2 : square1;
+                long targets = pieceMoves(types[piece], from, occupied);
+                while (targets != 0L) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    if (types[piece] == Piece.PAWN && to < 8) {
+                        for (int j = 0; j < PROMOTIONS.length; j++) {
+                            int[] promotion = promotedTypes[piece * PROMOTIONS.length + j];
+                            // Sorting may have put the new piece second
+                            boolean first = pieces == 1 || promotion[0] == PROMOTIONS[j];
+                            int entry = probe(promoted[piece * PROMOTIONS.length + j], promotion, 1, strongKing, weakKing,
+                                    first ? to : other, first ? other : to);
+                            if (Tablebase.result(entry) == Tablebase.LOSS && 2 * Tablebase.movesToMate(entry) <= pass - 1) {
+                                return true;
+                            }
+                        }
+                    } else {
+                        int index = Tablebase.index(pawns, pieces, 1, strongKing, weakKing, piece == 0 ? to : square1,
+                                piece == 0 ? square2 : to);
+                        if (isLoss(values[index] & 0xFF, pass)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks if every move of the bare king, to move, reaches a win of the stronger side
+         * decided in an earlier pass.
+         *
+         * @return true if it does.
+         */
+        private boolean weakLoses(int pass, int strongKing, int weakKing, int square1, int square2) {
+            long occupied = Bitboards.bit(strongKing) | Bitboards.bit(weakKing) | Bitboards.bit(square1);
+            if (pieces == 2) {
+                occupied |= Bitboards.bit(square2);
+            }
+            long kingMoves = Bitboards.kingAttacks(weakKing) & ~Bitboards.kingAttacks(strongKing);
+            while (kingMoves != 0L) {
+                int to = Long.numberOfTrailingZeros(kingMoves);
+                kingMoves &= kingMoves - 1;
+                int taken = to == square1 ? 0 : pieces == 2 && to == square2 ? 1 : -1;
+                long after = occupied & ~Bitboards.bit(weakKing) | Bitboards.bit(to);
+                if (isAttacked(to, after, square1, square2, taken)) {
+                    continue;
+                }
+                if (taken < 0) {
+                    int value = values[Tablebase.index(pawns, pieces, 0, strongKing, to, square1, square2)] & 0xFF;
+                    if (value == UNKNOWN || value > pass - 1) {
+                        return false; // Not yet a win, or a draw or impossible
+                    }
+                } else {
+                    if (captured[taken] == null) {
+                        return false; // Two bare kings
+                    }
+                    int entry = probe(captured[taken], capturedTypes[taken], 0, strongKing, to, taken == 0 ? square2 : square1, -1);
+                    if (Tablebase.result(entry) != Tablebase.WIN || 2 * Tablebase.movesToMate(entry) - 1 > pass - 1) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks if the stronger side has a legal move.
+         *
+         * @return true if it has.
+         */
+        private boolean hasStrongMove(int strongKing, int weakKing, long occupied, int square1, int square2) {
+            if ((Bitboards.kingAttacks(strongKing) & ~occupied & ~Bitboards.kingAttacks(weakKing)) != 0L) {
+                return true;
+            }
+            return pieceMoves(types[0], square1, occupied) != 0L || (pieces == 2 && pieceMoves(types[1], square2, occupied) != 0L);
+        }
+
+        /**
+         * Checks if the bare king has a legal move.
+         *
+         * @return true if it has.
+         */
+        private boolean hasWeakMove(int strongKing, int weakKing, long occupied, int square1, int square2) {
+            long kingMoves = Bitboards.kingAttacks(weakKing) & ~Bitboards.kingAttacks(strongKing);
+            while (kingMoves != 0L) {
+                int to = Long.numberOfTrailingZeros(kingMoves);
+                kingMoves &= kingMoves - 1;
+                int taken = to == square1 ? 0 : pieces == 2 && to == square2 ? 1 : -1;
+                if (!isAttacked(to, occupied & ~Bitboards.bit(weakKing) | Bitboards.bit(to), square1, square2, taken)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks if a square is attacked by the stronger side's pieces, not counting its king.
+         *
+         * @param square   The square.
+         * @param occupied The occupied squares.
+         * @param square1  The square of the first piece.
+         * @param square2  The square of the second piece, if any.
+         * @param skip     A piece that was taken and does not attack, or -1.
+         * @return true if the square is attacked.
+         */
+        private boolean isAttacked(int square, long occupied, int square1, int square2, int skip) {
+            for (int piece = 0; piece < pieces; piece++) {
+                if (piece != skip && (attacks(types[piece], piece == 0 ? square1 : square2, occupied) & Bitboards.bit(square)) != 0L) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks if a piece is a pawn on the first or last rank.
+         *
+         * @param piece  The piece number.
+         * @param square Its square.
+         * @return true if it is.
+         */
+        private boolean isMisplacedPawn(int piece, int square) {
+            return types[piece] == Piece.PAWN && (square < 8 || square >= 56);
+        }
+
+        /**
+         * Reads a generating value as a loss decided before a pass.
+         *
+         * @param value The value.
+         * @param pass  The pass number.
+         * @return true if the value is a loss in fewer plies than the pass.
+         */
+        private boolean isLoss(int value, int pass) {
+            return value >= LOSS && value < DRAW && value - LOSS <= pass - 1;
+        }
+    }
+
+    /**
+     * Gets the squares a piece of the stronger side can move to. The bare king is never
+     * attacked while the stronger side is to move, so no piece can capture.
+     *
+     * @param type     The piece type.
+     * @param square   The square of the piece.
+     * @param occupied The occupied squares.
+     * @return The empty squares the piece reaches.
+     */
+    private static long pieceMoves(int type, int square, long occupied) {
+        if (type != Piece.PAWN) {
+            return attacks(type, square, occupied) & ~occupied;
+        }
+        long push = Bitboards.bit(square - 8) & ~occupied;
+        if (push != 0L && square >= 48) {
+            push |= Bitboards.bit(square - 16) & ~occupied; // Two squares from the second rank
+        }
+        return push;
+    }
+
+    /**
+     * Gets the squares a piece of the stronger side attacks.
+     *
+     * @param type     The piece type.
+     * @param square   The square of the piece.
+     * @param occupied The occupied squares.
+     * @return The attacked squares.
+     */
+    private static long attacks(int type, int square, long occupied) {
+        switch (type) {
+            case Piece.PAWN:
+                return Bitboards.pawnAttacks(true, square);
+            case Piece.KNIGHT:
+                return Bitboards.knightAttacks(square);
+            case Piece.BISHOP:
+                return Bitboards.bishopAttacks(square, occupied);
+            case Piece.ROOK:
+                return Bitboards.rookAttacks(square, occupied);
+            default:
+                return Bitboards.queenAttacks(square, occupied);
+        }
+    }
+
+    /**
+     * Reads an entry of a finished table.
+     *
+     * @return The entry, as Tablebase.probe returns it.
+     */
+    private static int probe(byte[] table, int[] types, int sideToMove, int strongKing, int weakKing, int square1, int square2) {
+        return table[Tablebase.index(Tablebase.hasPawns(types), types.length, sideToMove, strongKing, weakKing,
+                square1, square2)] & 0xFF;
+    }
+
+    /**
+     * Finds the longest mate in a finished table.
+     *
+     * @param table The table, or null for two bare kings.
+     * @return The number of plies.
+     */
+    private static int longestPlies(byte[] table) {
+        int longest = 0;
+        if (table != null) {
+            for (byte entry : table) {
+                longest = Math.max(longest, 2 * Tablebase.movesToMate(entry & 0xFF));
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Converts a generating value to the format of the table files.
+     *
+     * @param value The value.
+     * @return The entry.
+     */
+    private static int encode(int value) {
+        if (value == ILLEGAL) {
+            return Tablebase.ILLEGAL << 6;
+        }
+        if (value == UNKNOWN || value == DRAW) {
+            return Tablebase.DRAW << 6;
+        }
+        if (value < LOSS) {
+            return Tablebase.WIN << 6 | (value + 1) / 2; // The winner's moves, counting the mating one
+        }
+        return Tablebase.LOSS << 6 | (value - LOSS) / 2;
+    }
+
+    /**
+     * Sorts piece types from strongest to weakest.
+     *
+     * @param types The types.
+     */
+    private static void sortDescending(int[] types) {
+        Arrays.sort(types);
+        for (int i = 0, j = types.length - 1; i < j; i++, j--) {
+            int type = types[i];
+            types[i] = types[j];
+            types[j] = type;
+        }
+    }
+
+    /**
+     * Generates tables and writes them, with the tables they depend on, to a directory.
+     *
+     * @param args The directory, optionally --threads n, then material names such as KQK or KBNK.
+     * @throws IOException if a table cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java tablebase.TablebaseGenerator directory [--threads n] KQK KRK KPK KBNK ...");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            }
+        }
+        Path directory = Paths.get(args[0]);
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator(threads);
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                i++;
+                continue;
+            }
+            int[] types = Tablebase.parseMaterial(args[i]);
+            if (types == null || types.length > Tablebase.MAX_PIECES - 2) {
+                System.out.println("Unsupported material: " + args[i]);
+                continue;
+            }
+            long start = System.nanoTime();
+            byte[] table = generator.generate(types);
+            long elapsed = (System.nanoTime() - start) / 1_000_000L;
+            long wins = 0;
+            int longest = 0;
+            for (int index = 0; index < table.length / 2; index++) {
+                if (Tablebase.result(table[index] & 0xFF) == Tablebase.WIN) {
+                    wins++;
+                    longest = Math.max(longest, Tablebase.movesToMate(table[index] & 0xFF));
+                }
+            }
+            System.out.println(args[i] + ": " + table.length + " positions, " + wins
+                    + " wins with the stronger side to move, longest mate in " + longest + ", " + elapsed + " ms");
+        }
+        generator.write(directory);
+        System.out.println("Wrote " + generator.getTables().size() + " tables to " + directory + " using " + threads + " threads");
+    }
+}
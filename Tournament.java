@@ -0,0 +1,377 @@
+package match;
+
+import board.Board;
+import board.Move;
+import book.OpeningBook;
+import engine.SearchLimits;
+import pgn.PgnGame;
+import pgn.PgnWriter;
+import tablebase.Tablebase;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * This class plays a match between two move sources without any console or window, for
+ * regression testing. Each game runs on its own thread, virtual where the Java runtime has
+ * virtual threads, so thousands of games can be open at once; a semaphore lets only as many
+ * move choices run at a time as there are cores, since engine searches are what takes the time.
+ *
+ * Games are played in pairs from each opening, with the colors swapped for the second game,
+ * so neither player benefits from a lopsided opening. A game ends by the rules (checkmate,
+ * stalemate, threefold repetition, the fifty-move rule, or bare kings and minor pieces), by a
+ * player resigning or choosing an illegal move, or as a draw after a maximum number of plies.
+ */
+public class Tournament {
+    private final MoveSource player1;
+    private final MoveSource player2;
+    private int games = 100;
+    private int concurrency = Runtime.getRuntime().availableProcessors(); // Move choices running at once
+    private int maxPlies = 400; // Games this long are adjudicated as draws
+    private List<String> openings = Collections.singletonList(Board.START_FEN);
+    private PgnWriter pgn; // Receives every finished game, or null
+    private ObjIntConsumer<MatchResult> listener; // Called after each game, or null
+
+    /**
+     * Constructs a Tournament.
+     *
+     * @param player1 The first player, whose side the result is counted from.
+     * @param player2 The second player.
+     */
+    public Tournament(MoveSource player1, MoveSource player2) {
+        this.player1 = player1;
+        this.player2 = player2;
+    }
+
+    /**
+     * Sets the number of games to play.
+     *
+     * @param games The game count; an even number gives each opening to both colors.
+     */
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    /**
+     * Sets how many move choices may run at the same time.
+     *
+     * @param concurrency The limit, usually the number of cores.
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Sets the length after which a game is adjudicated as a draw.
+     *
+     * @param maxPlies The number of plies.
+     */
+    public void setMaxPlies(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Sets the positions games start from, used in turn for each pair of games.
+     *
+     * @param openings The positions in FEN, at least one.
+     */
+    public void setOpenings(List<String> openings) {
+        this.openings = new ArrayList<>(openings);
+    }
+
+    /**
+     * Sets a writer to record every finished game to.
+     *
+     * @param pgn The writer, or null to not record games.
+     */
+    public void setPgnWriter(PgnWriter pgn) {
+        this.pgn = pgn;
+    }
+
+    /**
+     * Sets a listener called after each finished game, from the thread that played it. It is
+     * given the result and the number of games finished with that game; other games may have
+     * finished since, so the count is the one to report progress by.
+     *
+     * @param listener The listener, or null.
+     */
+    public void setListener(ObjIntConsumer<MatchResult> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Plays the match, returning when every game has finished.
+     *
+     * @return The result, counted from the first player's side.
+     * @throws IOException          if a game cannot be written to the PGN writer.
+     * @throws InterruptedException if the thread is interrupted before every game has
+     *                              finished; the games still running are cancelled.
+     */
+    public MatchResult run() throws IOException, InterruptedException {
+        MatchResult result = new MatchResult();
+        Semaphore moves = new Semaphore(concurrency);
+        ExecutorService executor = newGameExecutor();
+        List<Future<?>> futures = new ArrayList<>(games);
+        try {
+            for (int i = 0; i < games; i++) {
+                int round = i;
+                futures.add(executor.submit(() -> {
+                    int finished = result.add(play(round, moves));
+                    if (listener != null) {
+                        listener.accept(result, finished);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            // Wait for the cancelled games to stop, so none is counted or written after run returns
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("A game failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        result.finish();
+        return result;
+    }
+
+    /**
+     * Plays one game.
+     *
+     * @param round The game number, which picks the opening and the colors.
+     * @param moves The permits of the move choices that may run at once.
+     * @return The first player's score: 1, 0.5 or 0.
+     * @throws IOException          if the game cannot be written to the PGN writer.
+     * @throws InterruptedException if the thread is interrupted before the game is recorded;
+     *                              the game is then neither counted nor written.
+     */
+    private double play(int round, Semaphore moves) throws IOException, InterruptedException {
+        boolean firstIsWhite = round % 2 == 0;
+        Board board = Board.fromFen(openings.get(round / 2 % openings.size()));
+        PgnGame game = PgnGame.fromBoard(board);
+        game.setTag("Event", "Tournament");
+        game.setTag("Round", Integer.toString(round + 1));
+        game.setTag("White", (firstIsWhite ? player1 : player2).getName());
+        game.setTag("Black", (firstIsWhite ? player2 : player1).getName());
+
+        String outcome = PgnGame.outcome(board);
+        while (outcome.equals(PgnGame.UNFINISHED)) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            if (game.getMoveCount() >= maxPlies) {
+                outcome = PgnGame.DRAW;
+                break;
+            }
+            MoveSource source = board.isWhiteToMove() == firstIsWhite ? player1 : player2;
+            moves.acquire();
+            int packed;
+            try {
+                packed = source.chooseMove(board);
+            } finally {
+                moves.release();
+            }
+            int move = packed == Move.NONE ? Move.NONE : board.legalMove(packed);
+            if (move == Move.NONE) {
+                outcome = board.isWhiteToMove() ? PgnGame.BLACK_WINS : PgnGame.WHITE_WINS; // Resigned or illegal
+                break;
+            }
+            board.makeMove(move);
+            game.addMove(move);
+            outcome = PgnGame.outcome(board);
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException(); // The match was cancelled while the last move was chosen
+        }
+        game.setResult(outcome);
+        if (pgn != null) {
+            synchronized (pgn) {
+                pgn.write(game);
+            }
+        }
+        if (outcome.equals(PgnGame.DRAW)) {
+            return 0.5;
+        }
+        return outcome.equals(PgnGame.WHITE_WINS) == firstIsWhite ? 1.0 : 0.0;
+    }
+
+    /**
+     * Creates the executor the games run on: one virtual thread per game when the runtime
+     * has them (Java 21 and later), otherwise a pool of as many platform threads as moves
+     * may be chosen at once, which keeps the cores just as busy.
+     *
+     * @return The executor.
+     */
+    private ExecutorService newGameExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(concurrency);
+        }
+    }
+
+    /**
+     * Creates a player from a description: "random", or "engine" optionally followed by a
+     * colon and comma-separated settings, for example "engine:depth=6,hash=4" or
+     * "engine:movetime=100,book=book.bin,tablebase=tb".
+     *
+     * @param description The description, which also becomes the player's name.
+     * @param engines     The number of searches of the player that can run at once.
+     * @return The player.
+     * @throws IOException              if a book or tablebase cannot be read.
+     * @throws IllegalArgumentException if the description is not understood.
+     */
+    public static MoveSource parsePlayer(String description, int engines) throws IOException {
+        if (description.equals("random")) {
+            return new RandomMoveSource();
+        }
+        if (!description.startsWith("engine")) {
+            throw new IllegalArgumentException("Unknown player: " + description);
+        }
+        SearchLimits limits = new SearchLimits();
+        int hash = 1; // Many engines are kept, so each gets a small table by default
+        String book = null;
+        String tablebase = null;
+        int colon = description.indexOf(':');
+        if (colon >= 0) {
+            for (String setting : description.substring(colon + 1).split(",")) {
+                String[] pair = setting.split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Setting without a value: " + setting);
+                }
+                switch (pair[0]) {
+                    case "depth":
+                        limits.setDepth(Integer.parseInt(pair[1]));
+                        break;
+                    case "nodes":
+                        limits.setNodes(Long.parseLong(pair[1]));
+                        break;
+                    case "movetime":
+                        limits.setMoveTime(Long.parseLong(pair[1]));
+                        break;
+                    case "hash":
+                        hash = Integer.parseInt(pair[1]);
+                        break;
+                    case "book":
+                        book = pair[1];
+                        break;
+                    case "tablebase":
+                        tablebase = pair[1];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown setting: " + pair[0]);
+                }
+            }
+        }
+        if (limits.getDepth() == 0 && limits.getNodes() == 0 && limits.getMoveTime() == 0) {
+            limits.setMoveTime(100);
+        }
+        EngineMoveSource player = new EngineMoveSource(description, limits, engines, hash);
+        if (book != null) {
+            player.setBook(new OpeningBook(Paths.get(book)));
+        }
+        if (tablebase != null) {
+            player.setTablebase(new Tablebase(Paths.get(tablebase)));
+        }
+        return player;
+    }
+
+    /**
+     * Plays a match from the command line and prints the result.
+     *
+     * @param args The two players (see parsePlayer), then optionally --games n, --concurrency n,
+     *             --max-plies n, --openings file (one FEN per line) and --pgn file.
+     * @throws IOException          if a file cannot be read or written.
+     * @throws InterruptedException if the match is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java match.Tournament player1 player2 [--games n] [--concurrency n]"
+                    + " [--max-plies n] [--openings file] [--pgn file]");
+            System.out.println("Players: random, or engine[:depth=n,nodes=n,movetime=ms,hash=mb,book=file,tablebase=dir]");
+            return;
+        }
+        int games = 100;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        int maxPlies = 400;
+        String openings = null;
+        String pgnFile = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-plies":
+                    maxPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--openings":
+                    openings = args[++i];
+                    break;
+                case "--pgn":
+                    pgnFile = args[++i];
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        Tournament tournament = new Tournament(parsePlayer(args[0], concurrency), parsePlayer(args[1], concurrency));
+        tournament.setGames(games);
+        tournament.setConcurrency(concurrency);
+        tournament.setMaxPlies(maxPlies);
+        if (openings != null) {
+            List<String> fens = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(openings), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    fens.add(line.trim());
+                }
+            }
+            tournament.setOpenings(fens);
+        }
+        int total = games;
+        int reportInterval = Math.max(1, total / 10);
+        tournament.setListener((result, finished) -> {
+            if (finished % reportInterval == 0) {
+                System.out.println(finished + "/" + total + "  " + result);
+            }
+        });
+
+        MatchResult result;
+        if (pgnFile != null) {
+            try (PgnWriter pgn = PgnWriter.append(Paths.get(pgnFile))) {
+                tournament.setPgnWriter(pgn);
+                result = tournament.run();
+            }
+        } else {
+            result = tournament.run();
+        }
+        System.out.println(args[0] + " vs " + args[1] + ": " + result);
+    }
+}
@@ -0,0 +1,195 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a fixed-size hash table of search results keyed by
+ * Board.getHash(), shared by every search thread without locks.
+ *
+ * Entries are two longs: the packed data and the key XORed with that data. A reader
+ * only trusts an entry when XORing both words gives back its own key, so an entry torn
+ * by two threads writing at once reads as a miss instead of a wrong result.
+ * Entries are grouped in buckets of four that share one cache line; a new result
+ * replaces the entry of its own position if present, otherwise the entry that is
+ * shallowest once entries from older searches are penalised.
+ */
+public class TranspositionTable {
+    public static final int BOUND_NONE = 0;
+    public static final int BOUND_UPPER = 1; // The score is at most the stored value
+    public static final int BOUND_LOWER = 2; // The score is at least the stored value
+    public static final int BOUND_EXACT = 3;
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int AGE_MASK = 63;
+
+    private long[] table; // Pairs of (key ^ data, data)
+    private int bucketMask;
+    private int age; // Incremented once per search, stored in each entry
+
+    /**
+     * Constructs a table using about the given amount of memory.
+     *
+     * @param megabytes The table size in megabytes, rounded down to a power of two.
+     */
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    /**
+     * Reallocates the table with a new size, discarding every entry.
+     *
+     * @param megabytes The table size in megabytes, rounded down to a power of two.
+     */
+    public void resize(int megabytes) {
+        long entries = Math.max(BUCKET_SIZE, (long) megabytes * 1024 * 1024 / 16);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / BUCKET_SIZE, 1 << 26));
+        table = new long[buckets * BUCKET_SIZE * 2];
+        bucketMask = buckets - 1;
+        age = 0;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        age = 0;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key The position key.
+     * @return The packed entry, or 0 if the position is not stored.
+     */
+    public long probe(long key) {
+        long[] t = table;
+        int base = bucketIndex(key);
+        for (int i = 0; i < BUCKET_SIZE * 2; i += 2) {
+            long data = t[base + i + 1];
+            if ((t[base + i] ^ data) == key && data != 0L) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores a search result.
+     *
+     * @param key   The position key.
+     * @param move  The best move packed with Move.pack(), or 0.
+     * @param score The score, between -32768 and 32767.
+     * @param depth The searched depth, between 0 and 255.
+     * @param bound One of BOUND_UPPER, BOUND_LOWER or BOUND_EXACT.
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long[] t = table;
+        int base = bucketIndex(key);
+        int replace = base;
+        int worst = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_SIZE * 2; i += 2) {
+            long data = t[base + i + 1];
+            if ((t[base + i] ^ data) == key || data == 0L) {
+                // Same position: keep the old best move if the new result has none, and do not let a
+                // shallow bound from this search overwrite a much deeper one
+                if (move == 0 && data != 0L) {
+                    move = move(data);
+                }
+                if (data != 0L && bound != BOUND_EXACT && depth(data) > depth + 2 && age(data) == age) {
+                    return;
+                }
+                replace = base + i;
+                break;
+            }
+            int ageDifference = (age - age(data)) & AGE_MASK;
+            int value = depth(data) - 8 * ageDifference;
+            if (value < worst) {
+                worst = value;
+                replace = base + i;
+            }
+        }
+        long data = pack(move, score, depth, bound, age);
+        t[replace] = key ^ data;
+        t[replace + 1] = data;
+    }
+
+    /**
+     * Estimates how full the table is from a sample of entries written by the current search.
+     *
+     * @return The fill level in permille.
+     */
+    public int hashfull() {
+        long[] t = table;
+        int sampled = Math.min(1000, t.length / 2);
+        int used = 0;
+        for (int i = 0; i < sampled; i++) {
+            long data = t[i * 2 + 1];
+            if (data != 0L && age(data) == age) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+
+    /**
+     * Gets the best move of an entry.
+     *
+     * @param entry The packed entry.
+     * @return The move packed with Move.pack(), or 0.
+     */
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    /**
+     * Gets the score of an entry.
+     *
+     * @param entry The packed entry.
+     * @return The score.
+     */
+    public static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    /**
+     * Gets the searched depth of an entry.
+     *
+     * @param entry The packed entry.
+     * @return The depth.
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> 32 & 0xFF);
+    }
+
+    /**
+     * Gets the bound type of an entry.
+     *
+     * @param entry The packed entry.
+     * @return One of BOUND_UPPER, BOUND_LOWER or BOUND_EXACT.
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> 40 & 3);
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 42 & AGE_MASK);
+    }
+
+    // Layout: move (16 bits), score (16), depth (8), bound (2), age (6)
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        return (move & 0xFFFFL) | (score & 0xFFFFL) << 16 | (long) (depth & 0xFF) << 32
+                | (long) bound << 40 | (long) age << 42;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key >>> 38) & bucketMask) * BUCKET_SIZE * 2;
+    }
+}
@@ -0,0 +1,433 @@
+package uci;
+
+import board.Board;
+import board.Move;
+import book.OpeningBook;
+import engine.Engine;
+import engine.SearchLimits;
+import engine.SearchResult;
+import tablebase.Tablebase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class lets chess GUIs and match managers run the engine through the Universal Chess
+ * Interface: commands are read from standard input and answers written to standard output.
+ *
+ * Each search runs on a thread of its own on a copy of the position, so the command loop
+ * keeps reading while it runs and "stop" reaches the engine at once; the search checks for
+ * it at every node. Output goes through a queue written by one more thread, so a search
+ * reporting an iteration never waits on a slow pipe. Searches started with "go infinite"
+ * or "go ponder" hold back their bestmove until "stop" or "ponderhit", as the protocol asks;
+ * after a ponderhit the search gets the time budget the clocks allowed when it started.
+ */
+public class Uci {
+    private static final String NAME = "Chess";
+    private static final String AUTHOR = "the Chess authors";
+    private static final int MOVE_OVERHEAD = 50; // Milliseconds kept back from the clock for communication
+    private static final int DEFAULT_MOVES_TO_GO = 30; // Moves the remaining time is split over without movestogo
+    private static final int DEFAULT_PONDER_TIME = 1000; // Milliseconds searched after ponderhit when go gave no time
+
+    private final Engine engine;
+    private final Board board; // The position of the last "position" command
+    private final BlockingQueue<String> output = new LinkedBlockingQueue<>();
+    private final Thread writer; // Writes the queued output
+    private volatile boolean closed; // Set once the last command was handled, to end the writer
+    private final ScheduledExecutorService timer; // Ends searches a time budget after a ponderhit
+    private final Object lock = new Object(); // Guards holdBestMove
+    private boolean holdBestMove; // The running search waits for "stop" or "ponderhit" before answering
+    private volatile Thread search; // The running search, or null; read by the timer thread
+    private long ponderBudget; // Milliseconds the pondering search may run after a ponderhit, 0 for no limit
+
+    /**
+     * Constructs a Uci front end and starts the thread that writes its output.
+     *
+     * @param out The stream to write answers to.
+     */
+    public Uci(PrintStream out) {
+        this.engine = new Engine();
+        this.board = new Board();
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "uci-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        engine.setInfoListener(this::reportIteration);
+        this.writer = new Thread(() -> {
+            try {
+                while (!closed || !output.isEmpty()) {
+                    String line = output.poll(10, TimeUnit.MILLISECONDS);
+                    if (line != null) {
+                        out.println(line);
+                    }
+                    if (output.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "uci-output");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reads and carries out commands until "quit" or the end of the input, then stops the
+     * search and waits for the last answers to be written.
+     *
+     * @param in The stream to read commands from.
+     * @throws IOException if the input cannot be read.
+     */
+    public void run(BufferedReader in) throws IOException {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!handle(line.trim())) {
+                    break;
+                }
+            }
+        } finally {
+            stopSearch();
+            closed = true;
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Carries out one command.
+     *
+     * @param line The command line.
+     * @return false after "quit", true otherwise.
+     */
+    boolean handle(String line) {
+        String[] words = line.split("\\s+");
+        switch (words[0]) {
+            case "uci":
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Hash type spin default 16 min 1 max 4096");
+                send("option name Threads type spin default 1 min 1 max 256");
+                send("option name Ponder type check default false");
+                send("option name BookFile type string default <empty>");
+                send("option name TablebasePath type string default <empty>");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                stopSearch();
+                setOption(line);
+                break;
+            case "ucinewgame":
+                stopSearch();
+                engine.getTable().clear();
+                break;
+            case "position":
+                stopSearch();
+                setPosition(words);
+                break;
+            case "go":
+                stopSearch();
+                go(words);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "quit":
+                return false;
+            default:
+                break; // The protocol says to ignore unknown commands
+        }
+        return true;
+    }
+
+    /**
+     * Handles "setoption name id [value x]".
+     *
+     * @param line The command line.
+     */
+    private void setOption(String line) {
+        int nameStart = line.indexOf(" name ");
+        if (nameStart < 0) {
+            return;
+        }
+        int valueStart = line.indexOf(" value ");
+        String name = (valueStart < 0 ? line.substring(nameStart + 6) : line.substring(nameStart + 6, valueStart)).trim();
+        String value = valueStart < 0 ? "" : line.substring(valueStart + 7).trim();
+        try {
+            switch (name.toLowerCase()) {
+                case "hash":
+                    engine.getTable().resize(Integer.parseInt(value));
+                    break;
+                case "threads":
+                    engine.setThreads(Integer.parseInt(value));
+                    break;
+                case "bookfile":
+                    engine.setBook(value.isEmpty() || value.equals("<empty>") ? null : new OpeningBook(Paths.get(value)));
+                    break;
+                case "tablebasepath":
+                    engine.setTablebase(value.isEmpty() || value.equals("<empty>") ? null : new Tablebase(Paths.get(value)));
+                    break;
+                default:
+                    break; // Ponder needs no setting, and unknown options are ignored
+            }
+        } catch (IOException | NumberFormatException e) {
+            send("info string Could not set " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles "position [startpos | fen f1 ... f6] [moves m1 m2 ...]".
+     *
+     * @param words The words of the command.
+     */
+    private void setPosition(String[] words) {
+        int index = 1;
+        String fen = Board.START_FEN;
+        if (words.length > 1 && words[1].equals("fen")) {
+            StringBuilder fields = new StringBuilder();
+            for (index = 2; index < words.length && !words[index].equals("moves"); index++) {
+                fields.append(words[index]).append(' ');
+            }
+            fen = fields.toString().trim();
+        } else {
+            index = 2;
+        }
+        try {
+            board.setFen(fen);
+        } catch (IllegalArgumentException e) {
+            send("info string Invalid FEN: " + e.getMessage());
+            board.setFen(Board.START_FEN);
+            return;
+        }
+        if (index < words.length && words[index].equals("moves")) {
+            for (int i = index + 1; i < words.length; i++) {
+                Move move = Move.parse(words[i]);
+                int legal = move == null ? Move.NONE : board.legalMove(move.pack());
+                if (legal == Move.NONE) {
+                    send("info string Illegal move: " + words[i]);
+                    return;
+                }
+                board.makeMove(legal);
+            }
+        }
+    }
+
+    /**
+     * Handles "go", starting a search on its own thread.
+     *
+     * @param words The words of the command.
+     */
+    private void go(String[] words) {
+        SearchLimits limits = new SearchLimits();
+        long whiteTime = 0;
+        long blackTime = 0;
+        long whiteIncrement = 0;
+        long blackIncrement = 0;
+        int movesToGo = 0;
+        boolean ponder = false;
+        boolean infinite = false;
+        for (int i = 1; i < words.length; i++) {
+            String value = i + 1 < words.length ? words[i + 1] : "0";
+            try {
+                switch (words[i]) {
+                    case "wtime":
+                        whiteTime = Long.parseLong(value);
+                        break;
+                    case "btime":
+                        blackTime = Long.parseLong(value);
+                        break;
+                    case "winc":
+                        whiteIncrement = Long.parseLong(value);
+                        break;
+                    case "binc":
+                        blackIncrement = Long.parseLong(value);
+                        break;
+                    case "movestogo":
+                        movesToGo = Integer.parseInt(value);
+                        break;
+                    case "depth":
+                        limits.setDepth(Integer.parseInt(value));
+                        break;
+                    case "nodes":
+                        limits.setNodes(Long.parseLong(value));
+                        break;
+                    case "movetime":
+                        limits.setMoveTime(Long.parseLong(value));
+                        break;
+                    case "ponder":
+                        ponder = true;
+                        break;
+                    case "infinite":
+                        infinite = true;
+                        break;
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                send("info string Invalid value for " + words[i] + ": " + value);
+            }
+        }
+        long time = board.isWhiteToMove() ? whiteTime : blackTime;
+        long increment = board.isWhiteToMove() ? whiteIncrement : blackIncrement;
+        long budget = 0;
+        if (time > 0) {
+            budget = time / (movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO) + increment * 3 / 4;
+            budget = Math.max(1, Math.min(budget, time - MOVE_OVERHEAD));
+        }
+        if (ponder) {
+            ponderBudget = limits.getMoveTime() > 0 ? limits.getMoveTime() : budget;
+            if (ponderBudget == 0 && limits.getDepth() == 0 && limits.getNodes() == 0) {
+                ponderBudget = DEFAULT_PONDER_TIME; // Nothing else would end the search once the ponder is hit
+            }
+            limits.setMoveTime(0); // Pondering runs until the opponent moves
+        } else if (budget > 0 && limits.getMoveTime() == 0) {
+            limits.setMoveTime(budget);
+        }
+        synchronized (lock) {
+            holdBestMove = ponder || infinite;
+        }
+
+        Board position = new Board(board);
+        search = new Thread(() -> {
+            SearchResult result = engine.search(position, limits);
+            synchronized (lock) {
+                while (holdBestMove) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            List<Move> line = result.getPrincipalVariation();
+            if (result.getDepth() == 0 && !line.isEmpty()) {
+                send("info depth 0 score " + formatScore(result) + " pv " + line.get(0)); // Book or tablebase move
+            }
+            if (line.isEmpty()) {
+                send("bestmove 0000");
+            } else if (line.size() > 1) {
+                send("bestmove " + line.get(0) + " ponder " + line.get(1));
+            } else {
+                send("bestmove " + line.get(0));
+            }
+        }, "uci-search");
+        engine.prepare(); // A stop read before the thread gets going must still end its search
+        search.start();
+    }
+
+    /**
+     * Handles "ponderhit": the opponent played the expected move, so the pondering search
+     * goes on as a normal one with the time budget it was given.
+     */
+    private void ponderHit() {
+        Thread pondering = search;
+        if (pondering == null) {
+            return;
+        }
+        synchronized (lock) {
+            holdBestMove = false;
+            lock.notifyAll();
+        }
+        if (ponderBudget > 0) {
+            timer.schedule(() -> {
+                if (search == pondering) {
+                    engine.stop();
+                }
+            }, ponderBudget, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the running search, if any, and waits for it to send its bestmove.
+     */
+    private void stopSearch() {
+        Thread running = search;
+        if (running == null) {
+            return;
+        }
+        synchronized (lock) {
+            holdBestMove = false;
+            lock.notifyAll();
+        }
+        engine.stop();
+        try {
+            running.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        search = null;
+    }
+
+    /**
+     * Sends an info line for a completed iteration. It runs on the search thread, so it only
+     * formats the line and queues it.
+     *
+     * @param result The iteration.
+     */
+    private void reportIteration(SearchResult result) {
+        StringBuilder info = new StringBuilder("info depth ").append(result.getDepth())
+                .append(" score ").append(formatScore(result))
+                .append(" nodes ").append(result.getNodes())
+                .append(" nps ").append(result.getNodesPerSecond())
+                .append(" hashfull ").append(engine.getTable().hashfull())
+                .append(" time ").append(result.getTimeMillis())
+                .append(" pv");
+        for (Move move : result.getPrincipalVariation()) {
+            info.append(' ').append(move);
+        }
+        send(info.toString());
+    }
+
+    /**
+     * Formats a score as "cp n" or "mate n".
+     *
+     * @param result The search result.
+     * @return The score in UCI form.
+     */
+    private static String formatScore(SearchResult result) {
+        int mateIn = result.getMateIn();
+        return mateIn != 0 ? "mate " + mateIn : "cp " + result.getScore();
+    }
+
+    /**
+     * Queues a line of output.
+     *
+     * @param line The line.
+     */
+    private void send(String line) {
+        output.add(line);
+    }
+
+    /**
+     * Runs the engine as a UCI engine on standard input and output.
+     *
+     * @param args Not used.
+     * @throws IOException if standard input cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        Uci uci = new Uci(new PrintStream(System.out, false, StandardCharsets.UTF_8));
+        uci.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+    }
+}
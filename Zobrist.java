@@ -0,0 +1,87 @@
+package board;
+
+/**
+ * This class holds the random keys used to hash board positions.
+ * The keys come from a fixed seed so the same position always hashes to the same
+ * value, across runs and across machines.
+ */
+public final class Zobrist {
+    private static final long[][] PIECE_KEYS = new long[12][64]; // Indexed by color * 6 + piece type, then square
+    private static final long[] CASTLING_KEYS = new long[16]; // Indexed by castling rights bit set
+    private static final long[] EN_PASSANT_KEYS = new long[8]; // Indexed by column
+    private static final long SIDE_KEY; // Mixed in when black is to move
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int piece = 0; piece < 12; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                seed = next(seed);
+                PIECE_KEYS[piece][sq] = mix(seed);
+            }
+        }
+        for (int i = 0; i < 16; i++) {
+            seed = next(seed);
+            CASTLING_KEYS[i] = mix(seed);
+        }
+        for (int i = 0; i < 8; i++) {
+            seed = next(seed);
+            EN_PASSANT_KEYS[i] = mix(seed);
+        }
+        seed = next(seed);
+        SIDE_KEY = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Gets the key of a piece standing on a square.
+     *
+     * @param piece  The piece index, color * 6 + piece type with white as 0.
+     * @param square The square index.
+     * @return The key.
+     */
+    public static long piece(int piece, int square) {
+        return PIECE_KEYS[piece][square];
+    }
+
+    /**
+     * Gets the key of a castling rights bit set.
+     *
+     * @param rights The castling rights.
+     * @return The key.
+     */
+    public static long castling(int rights) {
+        return CASTLING_KEYS[rights];
+    }
+
+    /**
+     * Gets the key of an en passant square.
+     *
+     * @param square The en passant square, or Board.NO_SQUARE.
+     * @return The key, or 0 when there is no en passant square.
+     */
+    public static long enPassant(int square) {
+        return square == Board.NO_SQUARE ? 0L : EN_PASSANT_KEYS[square & 7];
+    }
+
+    /**
+     * Gets the key mixed in when black is to move.
+     *
+     * @return The key.
+     */
+    public static long side() {
+        return SIDE_KEY;
+    }
+
+    // SplitMix64 steps, so the table does not depend on java.util.Random's implementation
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}